@@ -0,0 +1,82 @@
+package dataContainers;
+
+
+/* * * * * * * * * * * * * * *
+ *  Columnar container for an angle of attack
+ * sweep. index a of every column belongs to
+ * alpha[a], Cp per alpha is optional
+ * * * * * * * * * * * * * * */
+public class AirfoilPolar {
+
+   private final double[] alphaRad;
+   private final double[] cl;
+   private final double[] cd;
+   private final double[] cm;
+   private final double[][] cp;   // [alpha index][ctrl point], null if not kept
+
+   public AirfoilPolar(double[] alphaRad, double[] cl, double[] cd, double[] cm,
+         double[][] cp) {
+      super();
+      this.alphaRad = alphaRad;
+      this.cl = cl;
+      this.cd = cd;
+      this.cm = cm;
+      this.cp = cp;
+   }
+
+   /* Specific getters */
+   public int getNumAlphas() {
+      return alphaRad.length;
+   }
+
+   public double getAlphaRadIndex(int index) {
+      return alphaRad[index];
+   }
+
+   public double getClIndex(int index) {
+      return cl[index];
+   }
+
+   public double getCdIndex(int index) {
+      return cd[index];
+   }
+
+   public double getCmIndex(int index) {
+      return cm[index];
+   }
+
+   public boolean hasCp() {
+      return cp != null;
+   }
+
+   public double[] getCpIndex(int index) {
+      if (cp == null) {
+         return null;
+      }
+      return cp[index];
+   }
+
+
+
+   /* Generic getters */
+   public double[] getAlphaRad() {
+      return alphaRad;
+   }
+
+   public double[] getCl() {
+      return cl;
+   }
+
+   public double[] getCd() {
+      return cd;
+   }
+
+   public double[] getCm() {
+      return cm;
+   }
+
+   public double[][] getCp() {
+      return cp;
+   }
+
+}
@@ -0,0 +1,202 @@
+package dataContainers;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import geometryContainers.GeometryKey;
+
+/* * * * * * * * * * * * * * *
+ *  Bounded cache of influence matrices keyed by
+ * the content of the panel coordinates
+ *
+ * an entry holds the Kutta augmented GeometricIntegral
+ * of a shape and, optionally, a factorization of it
+ * (type F, whatever the solver factors with). two
+ * airfoils with the same points share one entry no
+ * matter which object or code path they come from
+ *
+ * entries are weighed in bytes and the least recently
+ * used are dropped once maxBytes is passed. all access
+ * is synchronized, assembly and factoring happen
+ * outside the lock so two threads missing on the same
+ * shape may both build it, the second put just
+ * replaces the first
+ *
+ * cached integrals and factors are shared, callers
+ * must treat them as read only
+ *
+ * a backing InfluenceMatrixStore, if set, is the
+ * second level behind this one for the users of the
+ * cache, it is not read or written from here since
+ * only they know how to serialize an F
+ * * * * * * * * * * * * * * */
+public class InfluenceMatrixCache<F> {
+
+   // a quarter of the heap, at most 256 MB
+   public static final long DEFAULT_MAX_BYTES = Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 4);
+
+   private final long maxBytes;
+   private final LinkedHashMap<GeometryKey, Entry<F>> entries;
+
+   private long sizeBytes;
+   private long hits;
+   private long misses;
+   private long evictions;
+
+   // on disk second level, null for memory only
+   private volatile InfluenceMatrixStore backingStore;
+
+   public InfluenceMatrixCache() {
+      this(DEFAULT_MAX_BYTES);
+   }
+
+   public InfluenceMatrixCache(long maxBytes) {
+      this.maxBytes = maxBytes;
+      // access order, iteration starts at the least recently used
+      this.entries = new LinkedHashMap<GeometryKey, Entry<F>>(16, 0.75f, true);
+   }
+
+   // null on a miss
+   public synchronized Entry<F> get(GeometryKey key) {
+      Entry<F> entry = this.entries.get(key);
+      if (entry == null) {
+         this.misses++;
+      } else {
+         this.hits++;
+      }
+      return entry;
+   }
+
+   // factorization may be null, factorizationBytes is its approximate size.
+   // an entry bigger than the whole cache is not kept
+   public synchronized Entry<F> put(GeometryKey key, GeometricIntegral integral,
+         F factorization, long factorizationBytes) {
+
+      Entry<F> entry = new Entry<F>(integral, factorization,
+            integralBytes(integral) + factorizationBytes);
+
+      Entry<F> old = this.entries.remove(key);
+      if (old != null) {
+         this.sizeBytes -= old.sizeBytes;
+      }
+      if (entry.sizeBytes > this.maxBytes) {
+         return entry;
+      }
+
+      this.entries.put(key, entry);
+      this.sizeBytes += entry.sizeBytes;
+      this.evictToFit();
+      return entry;
+   }
+
+   private void evictToFit() {
+      Iterator<Map.Entry<GeometryKey, Entry<F>>> it = this.entries.entrySet().iterator();
+      while (this.sizeBytes > this.maxBytes && it.hasNext()) {
+         Entry<F> eldest = it.next().getValue();
+         it.remove();
+         this.sizeBytes -= eldest.sizeBytes;
+         this.evictions++;
+      }
+   }
+
+   public synchronized void remove(GeometryKey key) {
+      Entry<F> old = this.entries.remove(key);
+      if (old != null) {
+         this.sizeBytes -= old.sizeBytes;
+      }
+   }
+
+   public synchronized void clear() {
+      this.entries.clear();
+      this.sizeBytes = 0;
+   }
+
+   public synchronized void resetCounters() {
+      this.hits = 0;
+      this.misses = 0;
+      this.evictions = 0;
+   }
+
+   // 8 bytes per element of whichever matrices are held
+   private static long integralBytes(GeometricIntegral integral) {
+      long cells = (long) integral.getNumRows() * integral.getNumCols();
+      long bytes = 0;
+      if (integral.getNormalIntegral() != null) {
+         bytes += 8 * cells;
+      }
+      if (integral.getTangentialIntegral() != null) {
+         bytes += 8 * cells;
+      }
+      return bytes;
+   }
+
+   /* Getters */
+   public long getMaxBytes() {
+      return maxBytes;
+   }
+
+   public synchronized long getSizeBytes() {
+      return sizeBytes;
+   }
+
+   public synchronized int getNumEntries() {
+      return entries.size();
+   }
+
+   public synchronized long getHits() {
+      return hits;
+   }
+
+   public synchronized long getMisses() {
+      return misses;
+   }
+
+   public synchronized long getEvictions() {
+      return evictions;
+   }
+
+   public InfluenceMatrixStore getBackingStore() {
+      return backingStore;
+   }
+
+   public void setBackingStore(InfluenceMatrixStore backingStore) {
+      this.backingStore = backingStore;
+   }
+
+   @Override
+   public synchronized String toString() {
+      return "InfluenceMatrixCache: " + this.entries.size() + " entries, " + this.sizeBytes + " of " + this.maxBytes
+            + " bytes, hits " + this.hits + ", misses " + this.misses + ", evictions " + this.evictions;
+   }
+
+   /* * * * * * * * * * * * * * *
+    *  One cached shape, immutable
+    * * * * * * * * * * * * * * */
+   public static class Entry<F> {
+
+      private final GeometricIntegral geometricIntegral;
+      private final F factorization;
+      private final long sizeBytes;
+
+      Entry(GeometricIntegral geometricIntegral, F factorization, long sizeBytes) {
+         this.geometricIntegral = geometricIntegral;
+         this.factorization = factorization;
+         this.sizeBytes = sizeBytes;
+      }
+
+      public GeometricIntegral getGeometricIntegral() {
+         return geometricIntegral;
+      }
+
+      // null if only the integral was cached
+      public F getFactorization() {
+         return factorization;
+      }
+
+      public long getSizeBytes() {
+         return sizeBytes;
+      }
+   }
+
+}
@@ -0,0 +1,563 @@
+package dataContainers;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+import geometryContainers.GeometryKey;
+
+/* * * * * * * * * * * * * * *
+ *  On disk store of influence matrices and LU
+ * factors that outlives the JVM
+ *
+ * one file per shape, named <content hash>_<points>.vpmi,
+ * in a fixed little endian layout
+ *
+ *    header, 48 bytes
+ *       int  magic, int version, int panels, int points,
+ *       int  flags, int unused,
+ *       long content hash, long payload bytes, long payload CRC32
+ *    payload
+ *       double[2 * (points + panels)]
+ *                              x0, y0 ... then xc0, yc0 ...
+ *       double[panels^2]       normal integral, Kutta row applied
+ *       double[panels^2]       tangential integral   (flag 1)
+ *       double[panels^2]       LU factor, row major  (flag 2)
+ *       int[panels]            LU pivots             (flag 2)
+ *
+ * files are written and read with FileChannel read and
+ * write through one direct buffer per store, the bytes
+ * go between that buffer and the java arrays with no
+ * stream or byte[] in between. nothing is memory
+ * mapped, so no file is held open once a call returns
+ * and the rename into place and deletes work on every
+ * platform. every matrix is copied into heap arrays:
+ * all the solver kernels work on double[] and the CRC
+ * check touches every byte anyway, so a warm start
+ * still costs O(n^2) allocation and copying, only the
+ * O(n^2) assembly and O(n^3) factor are saved
+ *
+ * a file is written under a temp name and renamed into
+ * place, so readers never see half of one. temp files
+ * count against maxBytes, and ones left behind by a
+ * crashed writer are deleted once STALE_TEMP_MILLIS old
+ *
+ * on read the header, the stored coordinates and the
+ * CRC32 of the payload are all checked, a file that
+ * fails is deleted and counted as corrupt. every hit
+ * touches the file's modified time and past maxBytes
+ * the least recently used files are deleted
+ * * * * * * * * * * * * * * */
+public class InfluenceMatrixStore {
+
+   public static final long DEFAULT_MAX_BYTES = 2L << 30;
+
+   private static final int MAGIC = 0x564d5049;
+   private static final int VERSION = 2;
+   private static final int HEADER_BYTES = 48;
+   private static final int FLAG_TANGENTIAL = 1;
+   private static final int FLAG_FACTOR = 2;
+   private static final String SUFFIX = ".vpmi";
+   private static final String TEMP_SUFFIX = ".tmp";
+   // no live write takes this long, older temp files are left over
+   private static final long STALE_TEMP_MILLIS = 10 * 60 * 1000L;
+   // bytes moved per channel read or write, a multiple of 8
+   private static final int BUFFER_BYTES = 1 << 20;
+
+   private final File directory;
+   private final long maxBytes;
+   // reused by every read and write, both hold the store's lock
+   private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+   private long hits;
+   private long misses;
+   private long corruptions;
+   private long writes;
+   private long evictions;
+   private long failures;
+
+   public InfluenceMatrixStore(File directory) {
+      this(directory, DEFAULT_MAX_BYTES);
+   }
+
+   public InfluenceMatrixStore(File directory, long maxBytes) {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+         throw new IllegalArgumentException("InfluenceMatrixStore: cannot use directory " + directory);
+      }
+      this.directory = directory;
+      this.maxBytes = maxBytes;
+      this.sweepTempFiles(STALE_TEMP_MILLIS);
+   }
+
+   // null when the shape is not stored, or its file is unreadable or corrupt
+   public synchronized StoredInfluence read(GeometryKey key) {
+      File file = this.fileFor(key);
+      if (!file.isFile()) {
+         this.misses++;
+         return null;
+      }
+
+      StoredInfluence stored;
+      try {
+         stored = this.readFile(file, key);
+      } catch (IOException e) {
+         this.failures++;
+         this.misses++;
+         return null;
+      }
+
+      if (stored == null) {
+         file.delete();
+         this.corruptions++;
+         this.misses++;
+         return null;
+      }
+
+      file.setLastModified(System.currentTimeMillis());
+      this.hits++;
+      return stored;
+   }
+
+   // factorLU (row major, panels^2) and factorPivot may both be null.
+   // false if the entry is over maxBytes or could not be written
+   public synchronized boolean write(GeometryKey key, GeometricIntegral integral,
+         double[] factorLU, int[] factorPivot) {
+
+      int n = integral.getNumRows();
+      int flags = 0;
+      long payloadBytes = 16L * (key.getNumberOfPoints() + n) + 8L * n * n;
+      if (integral.getTangentialIntegral() != null) {
+         flags |= FLAG_TANGENTIAL;
+         payloadBytes += 8L * n * n;
+      }
+      if (factorLU != null) {
+         flags |= FLAG_FACTOR;
+         payloadBytes += (8L * n * n) + (4L * n);
+      }
+      if (HEADER_BYTES + payloadBytes > this.maxBytes) {
+         return false;
+      }
+
+      File file = this.fileFor(key);
+      File temp = new File(this.directory, file.getName() + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+      try {
+         try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+            raf.setLength(HEADER_BYTES + payloadBytes);
+            FileChannel channel = raf.getChannel();
+
+            ChannelCursor cursor = new ChannelCursor(channel, this.buffer, true, HEADER_BYTES, payloadBytes);
+            cursor.putDoubles(key.getCoordinates());
+            for (double[] row : integral.getNormalIntegral()) {
+               cursor.putDoubles(row);
+            }
+            if ((flags & FLAG_TANGENTIAL) != 0) {
+               for (double[] row : integral.getTangentialIntegral()) {
+                  cursor.putDoubles(row);
+               }
+            }
+            if ((flags & FLAG_FACTOR) != 0) {
+               cursor.putDoubles(factorLU);
+               cursor.putInts(factorPivot);
+            }
+            long crc = cursor.finish();
+
+            ByteBuffer header = this.buffer;
+            header.clear();
+            header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(key.getNumberOfPoints());
+            header.putInt(flags).putInt(0);
+            header.putLong(key.getContentHash()).putLong(payloadBytes).putLong(crc);
+            header.flip();
+            writeFully(channel, header, 0);
+            channel.force(false);
+         }
+
+         try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+         }
+      } catch (IOException e) {
+         temp.delete();
+         this.failures++;
+         return false;
+      }
+
+      this.writes++;
+      this.evictToFit(file);
+      return true;
+   }
+
+   // null if anything about the file does not match the key or its checksum
+   private StoredInfluence readFile(File file, GeometryKey key) throws IOException {
+      try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+         FileChannel channel = raf.getChannel();
+         if (channel.size() < HEADER_BYTES) {
+            return null;
+         }
+
+         ByteBuffer header = this.buffer;
+         header.clear();
+         header.limit(HEADER_BYTES);
+         readFully(channel, header, 0);
+         header.flip();
+         int magic = header.getInt();
+         int version = header.getInt();
+         int n = header.getInt();
+         int numberOfPoints = header.getInt();
+         int flags = header.getInt();
+         header.getInt();
+         long contentHash = header.getLong();
+         long payloadBytes = header.getLong();
+         long crc = header.getLong();
+
+         if (magic != MAGIC || version != VERSION || numberOfPoints != key.getNumberOfPoints()
+               || n != key.getNumberOfPanels() || contentHash != key.getContentHash() || n < 1
+               || channel.size() != HEADER_BYTES + payloadBytes) {
+            return null;
+         }
+         long expectedBytes = 16L * (numberOfPoints + n) + 8L * n * n
+               + (((flags & FLAG_TANGENTIAL) != 0) ? 8L * n * n : 0)
+               + (((flags & FLAG_FACTOR) != 0) ? (8L * n * n) + (4L * n) : 0);
+         if (payloadBytes != expectedBytes) {
+            return null;
+         }
+
+         ChannelCursor cursor = new ChannelCursor(channel, this.buffer, false, HEADER_BYTES, payloadBytes);
+         double[] coords = new double[2 * (numberOfPoints + n)];
+         cursor.getDoubles(coords);
+
+         double[][] normal = new double[n][n];
+         for (int i = 0; i < n; i++) {
+            cursor.getDoubles(normal[i]);
+         }
+         double[][] tangential = null;
+         if ((flags & FLAG_TANGENTIAL) != 0) {
+            tangential = new double[n][n];
+            for (int i = 0; i < n; i++) {
+               cursor.getDoubles(tangential[i]);
+            }
+         }
+         double[] factorLU = null;
+         int[] factorPivot = null;
+         if ((flags & FLAG_FACTOR) != 0) {
+            factorLU = new double[n * n];
+            factorPivot = new int[n];
+            cursor.getDoubles(factorLU);
+            cursor.getInts(factorPivot);
+         }
+
+         if (cursor.finish() != crc || !Arrays.equals(coords, key.getCoordinates())) {
+            return null;
+         }
+
+         return new StoredInfluence(new GeometricIntegral(n, n, normal, tangential), factorLU, factorPivot);
+      }
+   }
+
+   // all of buf from position to limit, read into or written from the file at offset
+   private static void readFully(FileChannel channel, ByteBuffer buf, long offset) throws IOException {
+      while (buf.hasRemaining()) {
+         int count = channel.read(buf, offset);
+         if (count < 0) {
+            throw new EOFException("InfluenceMatrixStore: file ends early");
+         }
+         offset += count;
+      }
+   }
+
+   private static void writeFully(FileChannel channel, ByteBuffer buf, long offset) throws IOException {
+      while (buf.hasRemaining()) {
+         offset += channel.write(buf, offset);
+      }
+   }
+
+   // oldest modified first until the directory is back under maxBytes
+   private void evictToFit(File keep) {
+      this.sweepTempFiles(STALE_TEMP_MILLIS);
+      File[] files = this.listFiles();
+      long total = 0;
+      for (File f : files) {
+         total += f.length();
+      }
+      // writes in flight from other processes, can not be evicted but take up room
+      for (File f : this.listTempFiles()) {
+         total += f.length();
+      }
+      if (total <= this.maxBytes) {
+         return;
+      }
+
+      Arrays.sort(files, new Comparator<File>() {
+         @Override
+         public int compare(File a, File b) {
+            return Long.compare(a.lastModified(), b.lastModified());
+         }
+      });
+      for (int i = 0; i < files.length && total > this.maxBytes; i++) {
+         if (files[i].equals(keep)) {
+            continue;
+         }
+         long len = files[i].length();
+         if (files[i].delete()) {
+            total -= len;
+            this.evictions++;
+         }
+      }
+   }
+
+   private File[] listFiles() {
+      return this.listFiles(false);
+   }
+
+   private File[] listTempFiles() {
+      return this.listFiles(true);
+   }
+
+   // <hash>_<points>.vpmi, or the <hash>_<points>.vpmi.<thread>.tmp files of unfinished writes
+   private File[] listFiles(boolean temp) {
+      File[] files = this.directory.listFiles();
+      if (files == null) {
+         return new File[0];
+      }
+      int count = 0;
+      for (File f : files) {
+         String name = f.getName();
+         boolean match = temp ? (name.endsWith(TEMP_SUFFIX) && name.contains(SUFFIX + "."))
+               : name.endsWith(SUFFIX);
+         if (f.isFile() && match) {
+            files[count++] = f;
+         }
+      }
+      return Arrays.copyOf(files, count);
+   }
+
+   // temp files not modified for olderThanMillis, 0 for all of them
+   private void sweepTempFiles(long olderThanMillis) {
+      long cutoff = System.currentTimeMillis() - olderThanMillis;
+      for (File f : this.listTempFiles()) {
+         if (olderThanMillis == 0 || f.lastModified() < cutoff) {
+            f.delete();
+         }
+      }
+   }
+
+   private File fileFor(GeometryKey key) {
+      return new File(this.directory, key.toString() + SUFFIX);
+   }
+
+   public synchronized void clear() {
+      for (File f : this.listFiles()) {
+         f.delete();
+      }
+      this.sweepTempFiles(0);
+   }
+
+   /* Getters */
+   public File getDirectory() {
+      return directory;
+   }
+
+   public long getMaxBytes() {
+      return maxBytes;
+   }
+
+   public synchronized long getSizeBytes() {
+      long total = 0;
+      for (File f : this.listFiles()) {
+         total += f.length();
+      }
+      return total;
+   }
+
+   public synchronized int getNumFiles() {
+      return this.listFiles().length;
+   }
+
+   public synchronized long getHits() {
+      return hits;
+   }
+
+   public synchronized long getMisses() {
+      return misses;
+   }
+
+   public synchronized long getCorruptions() {
+      return corruptions;
+   }
+
+   public synchronized long getWrites() {
+      return writes;
+   }
+
+   public synchronized long getEvictions() {
+      return evictions;
+   }
+
+   // IO errors on read or write, the solve carries on without the store
+   public synchronized long getFailures() {
+      return failures;
+   }
+
+   @Override
+   public synchronized String toString() {
+      return "InfluenceMatrixStore: " + this.directory + ", hits " + this.hits + ", misses " + this.misses
+            + ", writes " + this.writes + ", corrupt " + this.corruptions + ", evictions " + this.evictions
+            + ", failures " + this.failures;
+   }
+
+   /* * * * * * * * * * * * * * *
+    *  Sequential access to a region of a file through
+    * the store's buffer, BUFFER_BYTES moved per channel
+    * call, with a running CRC32 of everything passed
+    * * * * * * * * * * * * * * */
+   private static class ChannelCursor {
+
+      private final FileChannel channel;
+      private final ByteBuffer buffer;
+      private final boolean writing;
+      private final CRC32 crc = new CRC32();
+      private long offset;       // file offset of the next channel call
+      private long untouched;    // bytes of the region not yet read or written
+
+      ChannelCursor(FileChannel channel, ByteBuffer buffer, boolean writing, long start, long length) {
+         this.channel = channel;
+         this.buffer = buffer;
+         this.writing = writing;
+         this.offset = start;
+         this.untouched = length;
+         this.buffer.clear();
+         if ( !writing ) {
+            // empty, the first get fills it
+            this.buffer.limit(0);
+         }
+      }
+
+      // writes out and checksums what has been put
+      private void flush() throws IOException {
+         this.buffer.flip();
+         ByteBuffer view = this.buffer.duplicate();
+         this.crc.update(view);
+         int count = this.buffer.remaining();
+         writeFully(this.channel, this.buffer, this.offset);
+         this.offset += count;
+         this.untouched -= count;
+         this.buffer.clear();
+      }
+
+      // keeps the unread bytes and reads and checksums the next ones behind them
+      private void fill() throws IOException {
+         this.buffer.compact();
+         int start = this.buffer.position();
+         int count = (int) Math.min(this.buffer.remaining(), this.untouched);
+         this.buffer.limit(start + count);
+         readFully(this.channel, this.buffer, this.offset);
+         this.offset += count;
+         this.untouched -= count;
+
+         ByteBuffer view = this.buffer.duplicate();
+         view.position(start).limit(start + count);
+         this.crc.update(view);
+         this.buffer.flip();
+      }
+
+      void putDoubles(double[] src) throws IOException {
+         int off = 0;
+         while (off < src.length) {
+            if (this.buffer.remaining() < 8) {
+               this.flush();
+            }
+            int count = Math.min(this.buffer.remaining() / 8, src.length - off);
+            this.buffer.asDoubleBuffer().put(src, off, count);
+            this.buffer.position(this.buffer.position() + (8 * count));
+            off += count;
+         }
+      }
+
+      void getDoubles(double[] dst) throws IOException {
+         int off = 0;
+         while (off < dst.length) {
+            if (this.buffer.remaining() < 8) {
+               this.fill();
+            }
+            int count = Math.min(this.buffer.remaining() / 8, dst.length - off);
+            this.buffer.asDoubleBuffer().get(dst, off, count);
+            this.buffer.position(this.buffer.position() + (8 * count));
+            off += count;
+         }
+      }
+
+      void putInts(int[] src) throws IOException {
+         int off = 0;
+         while (off < src.length) {
+            if (this.buffer.remaining() < 4) {
+               this.flush();
+            }
+            int count = Math.min(this.buffer.remaining() / 4, src.length - off);
+            this.buffer.asIntBuffer().put(src, off, count);
+            this.buffer.position(this.buffer.position() + (4 * count));
+            off += count;
+         }
+      }
+
+      void getInts(int[] dst) throws IOException {
+         int off = 0;
+         while (off < dst.length) {
+            if (this.buffer.remaining() < 4) {
+               this.fill();
+            }
+            int count = Math.min(this.buffer.remaining() / 4, dst.length - off);
+            this.buffer.asIntBuffer().get(dst, off, count);
+            this.buffer.position(this.buffer.position() + (4 * count));
+            off += count;
+         }
+      }
+
+      // CRC32 of the whole region, on a read only once all of it has been got
+      long finish() throws IOException {
+         if (this.writing) {
+            this.flush();
+         }
+         return this.crc.getValue();
+      }
+   }
+
+   /* * * * * * * * * * * * * * *
+    *  What a store read gives back
+    * * * * * * * * * * * * * * */
+   public static class StoredInfluence {
+
+      private final GeometricIntegral geometricIntegral;
+      private final double[] factorLU;
+      private final int[] factorPivot;
+
+      StoredInfluence(GeometricIntegral geometricIntegral, double[] factorLU, int[] factorPivot) {
+         this.geometricIntegral = geometricIntegral;
+         this.factorLU = factorLU;
+         this.factorPivot = factorPivot;
+      }
+
+      public GeometricIntegral getGeometricIntegral() {
+         return geometricIntegral;
+      }
+
+      // row major panels^2 LU factor, null if none was stored
+      public double[] getFactorLU() {
+         return factorLU;
+      }
+
+      public int[] getFactorPivot() {
+         return factorPivot;
+      }
+   }
+
+}
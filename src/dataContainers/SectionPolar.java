@@ -0,0 +1,163 @@
+package dataContainers;
+
+import java.util.Arrays;
+
+
+/* * * * * * * * * * * * * * *
+ *  Lookup table of section Cl, Cd and Cm
+ * against angle of attack
+ *
+ * built once from an AirfoilPolar and then
+ * interpolated, either linearly or with a monotone
+ * cubic (Fritsch-Carlson) so no overshoot is added
+ * between tabulated points. outside the table the
+ * end segments are extended linearly, callers that
+ * need accuracy should check isInRange() first
+ * * * * * * * * * * * * * * */
+public class SectionPolar {
+
+   public enum INTERPOLATION{ LINEAR,MONOTONE_CUBIC;}
+
+   private final double[] alphaRad;
+   private final double[] cl;
+   private final double[] cd;
+   private final double[] cm;
+
+   // hermite slopes, only used for MONOTONE_CUBIC
+   private final double[] clSlopes;
+   private final double[] cdSlopes;
+   private final double[] cmSlopes;
+
+   private final INTERPOLATION interpolation;
+
+   public SectionPolar(AirfoilPolar polar, INTERPOLATION interpolation) {
+      if (polar.getNumAlphas() < 2) {
+         throw new IllegalArgumentException("SectionPolar: need at least two alphas to interpolate");
+      }
+      this.alphaRad = polar.getAlphaRad().clone();
+      this.cl = polar.getCl().clone();
+      this.cd = polar.getCd().clone();
+      this.cm = polar.getCm().clone();
+      this.interpolation = interpolation;
+
+      this.clSlopes = this.calculateMonotoneSlopes(this.cl);
+      this.cdSlopes = this.calculateMonotoneSlopes(this.cd);
+      this.cmSlopes = this.calculateMonotoneSlopes(this.cm);
+   }
+
+   public boolean isInRange(double alpha) {
+      return alpha >= this.alphaRad[0] && alpha <= this.alphaRad[this.alphaRad.length - 1];
+   }
+
+   public double getCl(double alpha) {
+      return this.interpolate(alpha, this.cl, this.clSlopes);
+   }
+
+   public double getCd(double alpha) {
+      return this.interpolate(alpha, this.cd, this.cdSlopes);
+   }
+
+   public double getCm(double alpha) {
+      return this.interpolate(alpha, this.cm, this.cmSlopes);
+   }
+
+   /*Private Methods*/
+   private double interpolate(double alpha, double[] y, double[] slopes) {
+      int last = this.alphaRad.length - 1;
+
+      // extend the end segments linearly
+      if (alpha <= this.alphaRad[0]) {
+         return this.lerp(alpha, 0, y);
+      }
+      if (alpha >= this.alphaRad[last]) {
+         return this.lerp(alpha, last - 1, y);
+      }
+
+      int k = Arrays.binarySearch(this.alphaRad, alpha);
+      if (k >= 0) {
+         return y[k];
+      }
+      k = -k - 2;   // index of the interval start
+
+      if (this.interpolation == INTERPOLATION.LINEAR) {
+         return this.lerp(alpha, k, y);
+      }
+
+      // cubic hermite on [k, k+1]
+      double h = this.alphaRad[k + 1] - this.alphaRad[k];
+      double t = (alpha - this.alphaRad[k]) / h;
+      double t2 = t * t;
+      double t3 = t2 * t;
+      double h00 = 2 * t3 - 3 * t2 + 1;
+      double h10 = t3 - 2 * t2 + t;
+      double h01 = -2 * t3 + 3 * t2;
+      double h11 = t3 - t2;
+
+      return h00 * y[k] + h10 * h * slopes[k] + h01 * y[k + 1] + h11 * h * slopes[k + 1];
+   }
+
+   private double lerp(double alpha, int k, double[] y) {
+      double slope = (y[k + 1] - y[k]) / (this.alphaRad[k + 1] - this.alphaRad[k]);
+      return y[k] + slope * (alpha - this.alphaRad[k]);
+   }
+
+   // Fritsch-Carlson
+   private double[] calculateMonotoneSlopes(double[] y) {
+      int n = y.length;
+      double[] secants = new double[n - 1];
+      double[] slopes = new double[n];
+
+      for (int k = 0; k < n - 1; k++) {
+         secants[k] = (y[k + 1] - y[k]) / (this.alphaRad[k + 1] - this.alphaRad[k]);
+      }
+
+      slopes[0] = secants[0];
+      slopes[n - 1] = secants[n - 2];
+      for (int k = 1; k < n - 1; k++) {
+         if (secants[k - 1] * secants[k] <= 0) {
+            slopes[k] = 0;
+         } else {
+            slopes[k] = (secants[k - 1] + secants[k]) / 2;
+         }
+      }
+
+      // limit slopes so each interval stays monotone
+      for (int k = 0; k < n - 1; k++) {
+         if (secants[k] == 0) {
+            slopes[k] = 0;
+            slopes[k + 1] = 0;
+         } else {
+            double a = slopes[k] / secants[k];
+            double b = slopes[k + 1] / secants[k];
+            double mag = a * a + b * b;
+            if (mag > 9) {
+               double tau = 3 / Math.sqrt(mag);
+               slopes[k] = tau * a * secants[k];
+               slopes[k + 1] = tau * b * secants[k];
+            }
+         }
+      }
+
+      return slopes;
+   }
+
+
+
+   /* Generic getters */
+   public INTERPOLATION getInterpolation() {
+      return interpolation;
+   }
+
+   public double getAlphaMinRad() {
+      return alphaRad[0];
+   }
+
+   public double getAlphaMaxRad() {
+      return alphaRad[alphaRad.length - 1];
+   }
+
+   public int getNumAlphas() {
+      return alphaRad.length;
+   }
+
+}
@@ -33,6 +33,11 @@ public class AirfoilGeometry {
     * * * * * * * * * * * * */
    
    private String airfoilType;
+   // the 4 digits when generated as a NACA 4 series, else null
+   private int[] nacaDigits;
+
+   // derived panel data, null until asked for and after any shape change
+   private volatile PanelSet panelSet;
    
    public AirfoilGeometry() {
       this.numberOfPoints = this.DEFAULTNUMPOINTS;            
@@ -84,10 +89,46 @@ public class AirfoilGeometry {
       //http://www.aerospaceweb.org/question/airfoils/q0100.shtml
       //http://www.aerospaceweb.org/question/airfoils/q0041.shtml
       
+      this.generateCosSpacing();
+      this.generateNACA4Series(nacaNumber1, nacaNumber2, nacaNumber3, nacaNumber4, (this.numberOfPoints / 2) + 1);
+   }
+
+   // same shape at any spacing, x/c = (cos(angle) + 1) / 2 so angle 0 is the
+   // lower trailing edge, pi the leading edge and 2 pi the upper trailing edge.
+   // angles must increase within [0, 2 pi], the point count becomes their number
+   public void becomeNACA4Series(int nacaNumber1, int nacaNumber2, int nacaNumber3, int nacaNumber4, double[] spacingAngles) {
+      if (spacingAngles.length < 3) {
+         throw new IllegalArgumentException("AirfoilGeometry: need at least 3 spacing angles, got " + spacingAngles.length);
+      }
+      for (int i = 0; i < spacingAngles.length; i++) {
+         boolean increasing = (i == 0) || spacingAngles[i] > spacingAngles[i - 1];
+         if ( !increasing || !(spacingAngles[i] >= 0) || !(spacingAngles[i] <= 2*Math.PI) ) {
+            throw new IllegalArgumentException("AirfoilGeometry: spacing angles must increase within [0, 2 pi], bad angle at " + i);
+         }
+      }
+
+      this.numberOfPoints = spacingAngles.length;
+      this.numberOfCtrlPoints = this.numberOfPoints - 1;
+      this.points = new double[this.numberOfPoints][this.NUMCOLUMNS];
+      this.controlPoints = new double[this.numberOfPoints - 1][this.NUMCOLUMNS];
+
+      this.cosChordPoints = spacingAngles.clone();
+      int upperStart = this.numberOfPoints;
+      for (int i = 0; i < this.numberOfPoints; i++) {
+         this.points[i][0] = (0.5) * ( Math.cos( this.cosChordPoints[i] ) + 1)   ;
+         if (upperStart == this.numberOfPoints && this.cosChordPoints[i] > Math.PI) {
+            upperStart = i;
+         }
+      }
+      this.generateNACA4Series(nacaNumber1, nacaNumber2, nacaNumber3, nacaNumber4, upperStart);
+   }
+
+   // x of every point already holds x/c, points from upperStart on are the upper surface
+   private void generateNACA4Series(int nacaNumber1, int nacaNumber2, int nacaNumber3, int nacaNumber4, int upperStart) {
+
       int airfoilTypeInt = (nacaNumber1 * 1000) + (nacaNumber2 * 100) + (nacaNumber3 * 10) + nacaNumber4;
       this.airfoilType = Integer.toString(airfoilTypeInt);
-      
-      this.generateCosSpacing();
+      this.nacaDigits = new int[] {nacaNumber1, nacaNumber2, nacaNumber3, nacaNumber4};
 
       double m = (double) nacaNumber1 / 100.0;
       double t = (nacaNumber3 * 10) + nacaNumber4;
@@ -99,7 +140,6 @@ public class AirfoilGeometry {
       double yt = 0;
       double x_over_c = 0;
       double dy_dx = 0;
-      double delineationBtnTopAndBtm = Math.floor((this.numberOfPoints ) / 2);
       double theta = 0;
       this.camberLine = new double[this.numberOfPoints]; 
       
@@ -130,7 +170,7 @@ public class AirfoilGeometry {
 
          theta = Math.atan(dy_dx);
 
-         if (i > delineationBtnTopAndBtm) { // ensures panels are made clockwise
+         if (i >= upperStart) { // ensures panels are made clockwise
             //xUpper
             this.points[i][0] = (x_over_c - yt * Math.sin(theta)) ;             
             //yUpper
@@ -170,17 +210,23 @@ public class AirfoilGeometry {
    public void setPointCoords(int index, double x, double y){      
       this.points[index][0] = x;
       this.points[index][1] = y;
+      this.invalidatePanelSet();
    }
 
    public void setCtrlCoords(int index, double x, double y){
       this.controlPoints[index][0] = x;
       this.controlPoints[index][1] = y;
+      this.invalidatePanelSet();
    }
    
    public double getPointX(int index) {
       return this.points[index][0];
    }
    
+   public double getPointY(int index) {
+      return this.points[index][1];
+   }
+   
    public double[] getAllPointX() {
       double[] x = new double[this.numberOfCtrlPoints];;
       for (int i = 0; i < this.numberOfPoints; i++) {
@@ -209,6 +255,7 @@ public class AirfoilGeometry {
          //y
          this.controlPoints[i][1] =  ( this.points[i + 1][1] +  this.points[i][1]) / 2;      
       }     
+      this.invalidatePanelSet();
 
       /*
       for (int i = 0; i < this.numberOfPoints - 1 ; i++) {
@@ -217,6 +264,26 @@ public class AirfoilGeometry {
        */
    }
 
+   // snapshot of the current shape, see GeometryKey
+   public GeometryKey getGeometryKey() {
+      return this.getPanelSet().getGeometryKey();
+   }
+
+   // built on first use after any change to the points
+   public PanelSet getPanelSet() {
+      PanelSet panels = this.panelSet;
+      if (panels == null) {
+         panels = new PanelSet(this);
+         this.panelSet = panels;
+      }
+      return panels;
+   }
+
+   // anyone editing getPoints() / getControlPoints() in place must call this
+   public void invalidatePanelSet() {
+      this.panelSet = null;
+   }
+
    /*Private Methods*/   
    private void generateCosSpacing() {
       this.cosChordPoints = new double[this.numberOfPoints];
@@ -267,6 +334,7 @@ public class AirfoilGeometry {
 
    public void setPoints(double[][] points) {
       this.points = points;
+      this.invalidatePanelSet();
    }
 
    public double[][] getControlPoints() {
@@ -275,6 +343,7 @@ public class AirfoilGeometry {
 
    public void setControlPoints(double[][] controlPoints) {
       this.controlPoints = controlPoints;
+      this.invalidatePanelSet();
    }
 
    public double getCordLength() {
@@ -329,6 +398,10 @@ public class AirfoilGeometry {
       this.airfoilType = airfoilType;
    }
 
+   public int[] getNACADigits() {
+      return (nacaDigits == null) ? null : nacaDigits.clone();
+   }
+
    
 
    
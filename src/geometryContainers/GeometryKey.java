@@ -0,0 +1,104 @@
+package geometryContainers;
+
+import java.util.Arrays;
+
+/* * * * * * * * * * * * * * *
+ *  Content based key for an airfoil shape
+ *
+ * snapshot of the point and control point
+ * coordinates at the time it was made, two airfoils
+ * with identical points and control points give
+ * equal keys no matter which object they came from.
+ * the control points are part of it since the
+ * influence matrix is built at them and they can be
+ * set apart from the points. angle of attack is not
+ * part of the key
+ * * * * * * * * * * * * * * */
+public class GeometryKey {
+
+   private final int numberOfPoints;
+   private final int numberOfPanels;
+   private final double[] coords;      // x0, y0, x1, y1 ... then xc0, yc0, xc1, yc1 ...
+   private final long contentHash;     // 64 bit FNV-1a over the coordinate bits
+
+   private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+   private static final long FNV_PRIME = 0x100000001b3L;
+
+   GeometryKey(PanelSet panels) {
+      this.numberOfPoints = panels.getNumberOfPoints();
+      this.numberOfPanels = panels.getNumberOfPanels();
+      this.coords = new double[2 * (this.numberOfPoints + this.numberOfPanels)];
+
+      double[] x = panels.getX();
+      double[] y = panels.getY();
+      for (int i = 0; i < this.numberOfPoints; i++) {
+         this.coords[2 * i] = x[i];
+         this.coords[2 * i + 1] = y[i];
+      }
+      double[] xc = panels.getXc();
+      double[] yc = panels.getYc();
+      int offset = 2 * this.numberOfPoints;
+      for (int i = 0; i < this.numberOfPanels; i++) {
+         this.coords[offset + 2 * i] = xc[i];
+         this.coords[offset + 2 * i + 1] = yc[i];
+      }
+
+      long hash = FNV_OFFSET;
+      for (int i = 0; i < this.coords.length; i++) {
+         hash = mix(hash, Double.doubleToLongBits(this.coords[i]));
+      }
+      this.contentHash = hash;
+   }
+
+   private static long mix(long hash, long bits) {
+      for (int b = 0; b < 8; b++) {
+         hash ^= (bits >>> (8 * b)) & 0xff;
+         hash *= FNV_PRIME;
+      }
+      return hash;
+   }
+
+   @Override
+   public boolean equals(Object obj) {
+      if (this == obj) {
+         return true;
+      }
+      if ( !(obj instanceof GeometryKey) ) {
+         return false;
+      }
+      GeometryKey other = (GeometryKey) obj;
+      return this.numberOfPoints == other.numberOfPoints
+            && this.numberOfPanels == other.numberOfPanels
+            && this.contentHash == other.contentHash
+            && Arrays.equals(this.coords, other.coords);
+   }
+
+   @Override
+   public int hashCode() {
+      return (int) (this.contentHash ^ (this.contentHash >>> 32));
+   }
+
+   @Override
+   public String toString() {
+      return String.format("%016x_%d", this.contentHash, this.numberOfPoints);
+   }
+
+   /* Getters */
+   public int getNumberOfPoints() {
+      return numberOfPoints;
+   }
+
+   public int getNumberOfPanels() {
+      return numberOfPanels;
+   }
+
+   public long getContentHash() {
+      return contentHash;
+   }
+
+   // x0, y0, x1, y1 ... then xc0, yc0 ..., copy of the snapshot
+   public double[] getCoordinates() {
+      return coords.clone();
+   }
+
+}
@@ -0,0 +1,118 @@
+package geometryContainers;
+
+/* * * * * * * * * * * * * * *
+ *  Flat (struct of arrays) view of an airfoils
+ * panels with the derived quantities the panel
+ * solver needs
+ *
+ * built once per shape by AirfoilGeometry and
+ * thrown away as soon as the shape changes, so
+ * a PanelSet never goes stale. the arrays are
+ * shared, treat them as read only
+ * * * * * * * * * * * * * * */
+public class PanelSet {
+
+   private final int numberOfPoints;
+   private final int numberOfPanels;
+
+   // geometry points, numberOfPoints long
+   private final double[] x;
+   private final double[] y;
+
+   // per panel, numberOfPanels long
+   private final double[] xc;       // control point
+   private final double[] yc;
+   private final double[] s;        // panel length
+   private final double[] phi;      // angle the panel makes with the X axis, [0, 2PI)
+   private final double[] sinPhi;
+   private final double[] cosPhi;
+
+   private GeometryKey geometryKey;
+
+   PanelSet(AirfoilGeometry af) {
+      this.numberOfPoints = af.getNumberOfPoints();
+      this.numberOfPanels = af.getNumberOfCtrlPoints();
+
+      this.x = new double[this.numberOfPoints];
+      this.y = new double[this.numberOfPoints];
+      for (int i = 0; i < this.numberOfPoints; i++) {
+         this.x[i] = af.getPointX(i);
+         this.y[i] = af.getPointY(i);
+      }
+
+      this.xc = new double[this.numberOfPanels];
+      this.yc = new double[this.numberOfPanels];
+      this.s = new double[this.numberOfPanels];
+      this.phi = new double[this.numberOfPanels];
+      this.sinPhi = new double[this.numberOfPanels];
+      this.cosPhi = new double[this.numberOfPanels];
+
+      double[][] ctrl = af.getControlPoints();
+      for (int i = 0; i < this.numberOfPanels; i++) {
+         this.xc[i] = ctrl[i][0];
+         this.yc[i] = ctrl[i][1];
+
+         double dx = (this.x[i + 1] - this.x[i]);
+         double dy = (this.y[i + 1] - this.y[i]);
+         this.s[i] =  Math.sqrt( (Math.pow(dx, 2) + Math.pow(dy, 2)) );
+         this.phi[i] = Math.atan2(dy, dx);
+
+         if (this.phi[i] < 0) {
+            this.phi[i] = this.phi[i] + 2 * Math.PI;
+         }
+
+         this.sinPhi[i] = Math.sin(this.phi[i]);
+         this.cosPhi[i] = Math.cos(this.phi[i]);
+      }
+   }
+
+   // made on first use, the coordinates can not change under it
+   public GeometryKey getGeometryKey() {
+      if (this.geometryKey == null) {
+         this.geometryKey = new GeometryKey(this);
+      }
+      return this.geometryKey;
+   }
+
+   /* Getters */
+   public int getNumberOfPoints() {
+      return numberOfPoints;
+   }
+
+   public int getNumberOfPanels() {
+      return numberOfPanels;
+   }
+
+   public double[] getX() {
+      return x;
+   }
+
+   public double[] getY() {
+      return y;
+   }
+
+   public double[] getXc() {
+      return xc;
+   }
+
+   public double[] getYc() {
+      return yc;
+   }
+
+   public double[] getS() {
+      return s;
+   }
+
+   public double[] getPhi() {
+      return phi;
+   }
+
+   public double[] getSinPhi() {
+      return sinPhi;
+   }
+
+   public double[] getCosPhi() {
+      return cosPhi;
+   }
+
+}
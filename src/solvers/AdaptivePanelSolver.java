@@ -0,0 +1,259 @@
+package solvers;
+
+import geometryContainers.AirfoilGeometry;
+
+/* * * * * * * * * * * * * * *
+ *  Panel count driven by convergence of Cl and Cm
+ *
+ * the first level is the given NACA 4 series as it
+ * is, every further level places growthFactor times
+ * the points by the same rule. the spacing angle of
+ * the given points is read as a function of the
+ * point index and sampled finer, so the stock cos
+ * spacing stays the stock cos spacing, open one step
+ * short of 2 pi at the upper trailing edge, and a
+ * spacing given up to 2 pi stays closed. the levels
+ * therefore converge to the Cl of VortexPanelSolver
+ * and RichardsonExtrapolation on the same airfoil
+ *
+ * the cos spacing already puts the smallest panels at
+ * the leading and trailing edges where the strength
+ * changes fastest. moving points further towards them
+ * by a strength gradient monitor was measured to cost
+ * accuracy, any spacing that is not uniform in angle
+ * drops these constant strength panels from about 2nd
+ * to 1st order in the panel count, and grading the
+ * trailing edge moves the converged Cl itself. so
+ * only the panel count adapts. constant strength
+ * panels also carry a near null odd / even mode when
+ * the panel count is even, so every new level has an
+ * odd number of panels
+ *
+ * stops once both Cl and Cm moved less than the
+ * tolerance over each of the last two level changes,
+ * a single small change can fall between two levels
+ * that are both off. the larger of those two changes
+ * is the error estimate. every level starts the
+ * iterative solvers from the previous strengths
+ * carried over to the new panels
+ *
+ * the geometry must come from becomeNACA4Series,
+ * other shapes have no way to place new points
+ * * * * * * * * * * * * * * */
+public class AdaptivePanelSolver {
+
+   public static final int DEFAULT_MAX_POINTS = 4000;
+   public static final double DEFAULT_TOLERANCE = 1e-3;
+   public static final double DEFAULT_GROWTH_FACTOR = 1.5;
+
+   private final int[] nacaDigits;
+   private final double cordLength;
+   private final AirfoilGeometry baseAirfoil;
+   private final double[] baseAngles;
+   private final boolean openEnd;       // last point short of 2 pi, as the stock spacing
+
+   private int maxPoints = DEFAULT_MAX_POINTS;
+   private double tolerance = DEFAULT_TOLERANCE;
+   private double growthFactor = DEFAULT_GROWTH_FACTOR;
+   private double Vinfinity = 1;
+   private VortexPanelSolver.LINEARSOLVER linearSolver = VortexPanelSolver.LINEARSOLVER.DIRECT;
+
+   // results of the last run
+   private AirfoilGeometry airfoil;
+   private VortexPanelSolver solver;
+   private int numLevels;
+   private boolean converged;
+   private double clErrorEstimate;
+   private double cmErrorEstimate;
+
+   // af is solved as it is for the first level and is not changed
+   public AdaptivePanelSolver(AirfoilGeometry af) {
+      this.nacaDigits = af.getNACADigits();
+      if (this.nacaDigits == null) {
+         throw new IllegalArgumentException("AdaptivePanelSolver: airfoil is not a NACA 4 series");
+      }
+      this.cordLength = af.getCordLength();
+      this.baseAirfoil = af;
+      this.baseAngles = af.getCosChordPoints().clone();
+      this.openEnd = this.baseAngles[this.baseAngles.length - 1] < 2*Math.PI;
+   }
+
+   // refines until converged or maxPoints is reached, check hasConverged()
+   public void run(double alphaRad) {
+
+      AirfoilGeometry level = this.baseAirfoil;
+      double[] angles = this.baseAngles;
+
+      double[] guess = null;
+      double lastCl = Double.NaN;
+      double lastCm = Double.NaN;
+      double lastClChange = Double.POSITIVE_INFINITY;
+      double lastCmChange = Double.POSITIVE_INFINITY;
+      this.numLevels = 0;
+      this.converged = false;
+      this.clErrorEstimate = Double.POSITIVE_INFINITY;
+      this.cmErrorEstimate = Double.POSITIVE_INFINITY;
+
+      while (true) {
+         this.airfoil = level;
+         this.solver = new VortexPanelSolver(this.airfoil);
+         this.solver.setVinfinity(this.Vinfinity);
+         this.solver.setLinearSolver(this.linearSolver);
+         this.solver.setInitialGuess(guess);
+         this.solver.runVPMSolver(alphaRad);
+         this.numLevels++;
+
+         double cl = this.solver.getCl();
+         double cm = this.solver.getCm();
+         if (this.numLevels > 1) {
+            double clChange = Math.abs(cl - lastCl);
+            double cmChange = Math.abs(cm - lastCm);
+            this.clErrorEstimate = Math.max(clChange, lastClChange);
+            this.cmErrorEstimate = Math.max(cmChange, lastCmChange);
+            if (this.clErrorEstimate < this.tolerance && this.cmErrorEstimate < this.tolerance) {
+               this.converged = true;
+               return;
+            }
+            lastClChange = clChange;
+            lastCmChange = cmChange;
+         }
+         lastCl = cl;
+         lastCm = cm;
+
+         int newPoints = (int) Math.ceil(angles.length * this.growthFactor);
+         newPoints += newPoints % 2;    // odd panel count
+         if (newPoints > this.maxPoints) {
+            return;
+         }
+         double[] newAngles = this.placeAngles(newPoints);
+         guess = this.carryOver(angles, this.solver.getVortexStrengths(), newAngles);
+         angles = newAngles;
+
+         level = new AirfoilGeometry(this.cordLength, angles.length);
+         level.becomeNACA4Series(this.nacaDigits[0], this.nacaDigits[1], this.nacaDigits[2], this.nacaDigits[3], angles);
+      }
+   }
+
+   // the given spacing angles sampled at numPoints. point i of n sits at
+   // u = i / n with an open end, the missing step up to 2 pi being u = 1,
+   // or at u = i / (n - 1) when closed, angles between given points are linear in u
+   private double[] placeAngles(int numPoints) {
+      int baseSteps = this.openEnd ? this.baseAngles.length : this.baseAngles.length - 1;
+      int steps = this.openEnd ? numPoints : numPoints - 1;
+
+      double[] angles = new double[numPoints];
+      for (int i = 0; i < numPoints; i++) {
+         double u = (double) i * baseSteps / steps;
+         int k = Math.min((int) u, baseSteps - 1);
+         double start = this.baseAngles[k];
+         double end = (k + 1 < this.baseAngles.length) ? this.baseAngles[k + 1] : 2*Math.PI;
+         angles[i] = start + (u - k) * (end - start);
+      }
+      if ( !this.openEnd ) {
+         angles[numPoints - 1] = this.baseAngles[this.baseAngles.length - 1];
+      }
+      return angles;
+   }
+
+   // each new panel takes the strength of the old panel holding its middle
+   private double[] carryOver(double[] angles, double[] gamma, double[] newAngles) {
+      double[] guess = new double[newAngles.length - 1];
+      int j = 0;
+      for (int k = 0; k < guess.length; k++) {
+         double middle = 0.5 * (newAngles[k] + newAngles[k + 1]);
+         while (j < gamma.length - 1 && angles[j + 1] < middle) {
+            j++;
+         }
+         guess[k] = gamma[j];
+      }
+      return guess;
+   }
+
+   /* Getters and Setters */
+   public AirfoilGeometry getAirfoil() {
+      return airfoil;
+   }
+
+   public VortexPanelSolver getSolver() {
+      return solver;
+   }
+
+   public double getCl() {
+      return this.solver.getCl();
+   }
+
+   public double getCd() {
+      return this.solver.getCd();
+   }
+
+   public double getCm() {
+      return this.solver.getCm();
+   }
+
+   public int getNumberOfPoints() {
+      return this.airfoil.getNumberOfPoints();
+   }
+
+   public int getNumLevels() {
+      return numLevels;
+   }
+
+   public boolean hasConverged() {
+      return converged;
+   }
+
+   public double getClErrorEstimate() {
+      return clErrorEstimate;
+   }
+
+   public double getCmErrorEstimate() {
+      return cmErrorEstimate;
+   }
+
+   public int getMaxPoints() {
+      return maxPoints;
+   }
+
+   public void setMaxPoints(int maxPoints) {
+      this.maxPoints = maxPoints;
+   }
+
+   public double getTolerance() {
+      return tolerance;
+   }
+
+   public void setTolerance(double tolerance) {
+      if ( !(tolerance > 0) ) {
+         throw new IllegalArgumentException("AdaptivePanelSolver: tolerance must be > 0");
+      }
+      this.tolerance = tolerance;
+   }
+
+   public double getGrowthFactor() {
+      return growthFactor;
+   }
+
+   public void setGrowthFactor(double growthFactor) {
+      if ( !(growthFactor > 1) ) {
+         throw new IllegalArgumentException("AdaptivePanelSolver: growth factor must be > 1");
+      }
+      this.growthFactor = growthFactor;
+   }
+
+   public double getVinfinity() {
+      return Vinfinity;
+   }
+
+   public void setVinfinity(double vinfinity) {
+      Vinfinity = vinfinity;
+   }
+
+   public VortexPanelSolver.LINEARSOLVER getLinearSolver() {
+      return linearSolver;
+   }
+
+   public void setLinearSolver(VortexPanelSolver.LINEARSOLVER linearSolver) {
+      this.linearSolver = linearSolver;
+   }
+
+}
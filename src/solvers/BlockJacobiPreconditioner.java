@@ -0,0 +1,105 @@
+package solvers;
+
+/* * * * * * * * * * * * * * *
+ *  Block Jacobi preconditioner
+ *
+ * consecutive panels are neighbours on the surface
+ * and their mutual influence is the strongest, so
+ * diagonal blocks of blockSize panels hold the near
+ * field of the influence matrix. each block is LU
+ * factored once, applying M^-1 is one small solve
+ * per block
+ *
+ * the blocks run cyclically and start half a block
+ * before the last panel, so the first block holds
+ * both sides of the trailing edge and with them the
+ * Kutta row coupling panel 0 to panel n - 1
+ *
+ * a panel has no normal influence on itself, the
+ * diagonal of the vortex panel matrix is zero, so a
+ * block has to span a few panels to be invertible.
+ * a block that still comes out singular is left as
+ * the identity
+ * * * * * * * * * * * * * * */
+public class BlockJacobiPreconditioner implements Preconditioner {
+
+   public static final int DEFAULT_BLOCK_SIZE = 64;
+
+   private final int size;
+   private final int blockSize;
+   // blockIndex[b] = matrix rows / cols making up block b
+   private final int[][] blockIndex;
+   private final LUFactorization[] blockFactors;
+
+   public BlockJacobiPreconditioner(EntryOperator a) {
+      this(a, DEFAULT_BLOCK_SIZE);
+   }
+
+   // only the entries inside the blocks are read
+   public BlockJacobiPreconditioner(EntryOperator a, int blockSize) {
+      if (blockSize < 2) {
+         throw new IllegalArgumentException("BlockJacobiPreconditioner: block size must be at least 2");
+      }
+      this.size = a.getSize();
+      this.blockSize = Math.min(blockSize, Math.max(this.size, 1));
+
+      int numBlocks = (this.size + this.blockSize - 1) / this.blockSize;
+      int offset = this.size - (this.blockSize / 2);
+      this.blockIndex = new int[numBlocks][];
+      this.blockFactors = new LUFactorization[numBlocks];
+
+      for (int b = 0; b < numBlocks; b++) {
+         int start = b * this.blockSize;
+         int len = Math.min(this.blockSize, this.size - start);
+         int[] index = new int[len];
+         for (int t = 0; t < len; t++) {
+            index[t] = (offset + start + t) % this.size;
+         }
+         this.blockIndex[b] = index;
+
+         DenseMatrix block = new DenseMatrix(len, len);
+         for (int i = 0; i < len; i++) {
+            for (int j = 0; j < len; j++) {
+               block.set(i, j, a.getEntry(index[i], index[j]));
+            }
+         }
+         try {
+            this.blockFactors[b] = LUFactorization.factorInPlace(block);
+         } catch (ArithmeticException e) {
+            this.blockFactors[b] = null;
+         }
+      }
+   }
+
+   @Override
+   public void apply(double[] r, double[] z) {
+      for (int b = 0; b < this.blockFactors.length; b++) {
+         int[] index = this.blockIndex[b];
+         if (this.blockFactors[b] == null) {
+            for (int t = 0; t < index.length; t++) {
+               z[index[t]] = r[index[t]];
+            }
+            continue;
+         }
+
+         double[] rBlock = new double[index.length];
+         for (int t = 0; t < index.length; t++) {
+            rBlock[t] = r[index[t]];
+         }
+         double[] zBlock = this.blockFactors[b].solve(rBlock);
+         for (int t = 0; t < index.length; t++) {
+            z[index[t]] = zBlock[t];
+         }
+      }
+   }
+
+   /* Getters */
+   public int getSize() {
+      return size;
+   }
+
+   public int getBlockSize() {
+      return blockSize;
+   }
+
+}
@@ -0,0 +1,254 @@
+package solvers;
+
+/* * * * * * * * * * * * * * *
+ *  Cache blocked (tiled) LU factorization with
+ * partial pivoting
+ *
+ * the plain right looking elimination streams the
+ * whole trailing matrix once per pivot column and
+ * goes memory bound after a few hundred panels.
+ * here the columns are taken blockSize at a time:
+ *
+ *    1. panel   - factor the blockSize wide column
+ *                 panel with the usual pivot search
+ *    2. U12     - forward substitute the unit L11
+ *                 into the rows of the panel
+ *    3. trailing - A22 -= L21 * U12 as a GEMM over
+ *                 column tiles. each U12 tile is
+ *                 packed contiguous and stays in
+ *                 L1/L2, a 4 x 4 block of A22 is
+ *                 kept in registers over all
+ *                 blockSize k before it is stored
+ *
+ * every element still sees its updates in the same
+ * column order, so pivots and results match the
+ * unblocked kernel. small systems skip straight to
+ * the unblocked kernel
+ * * * * * * * * * * * * * * */
+public class BlockedLUKernel {
+
+   public static final int DEFAULT_BLOCK_SIZE = 64;
+   public static final int DEFAULT_COLUMN_TILE = 256;
+   public static final int DEFAULT_MIN_BLOCKED_SIZE = 192;
+   // register tile of the trailing update, see updateMicroTile
+   private static final int MICRO_ROWS = 4;
+   private static final int MICRO_COLS = 4;
+
+   private final int blockSize;
+   private final int columnTile;
+   private final int minBlockedSize;
+   // same bits from the scalar and SIMD row updates
+   private final VectorOps vectorOps = VectorKernels.get();
+
+   public BlockedLUKernel() {
+      this(DEFAULT_BLOCK_SIZE, DEFAULT_COLUMN_TILE, DEFAULT_MIN_BLOCKED_SIZE);
+   }
+
+   public BlockedLUKernel(int blockSize, int columnTile, int minBlockedSize) {
+      if (blockSize < 1 || columnTile < 1) {
+         throw new IllegalArgumentException("BlockedLUKernel: block and tile sizes must be positive");
+      }
+      this.blockSize = blockSize;
+      this.columnTile = columnTile;
+      this.minBlockedSize = minBlockedSize;
+   }
+
+   // factors a COPY of a
+   public LUFactorization factor(DenseMatrix a) {
+      return this.factorInPlace(a.copy());
+   }
+
+   public LUFactorization factor(double[][] a, int size) {
+      return this.factorInPlace(DenseMatrix.fromArray(a, size, size));
+   }
+
+   // a is overwritten by the factor
+   public LUFactorization factorInPlace(DenseMatrix a) {
+      int size = a.getNumRows();
+      int[] pivot = new int[size];
+      for (int i = 0; i < size; i++) {
+         pivot[i] = i;
+      }
+
+      if (size < this.minBlockedSize) {
+         LUFactorization.eliminate(a, pivot, 0, size);
+         return new LUFactorization(size, a, pivot);
+      }
+
+      for (int kb = 0; kb < size; kb += this.blockSize) {
+         int ke = Math.min(kb + this.blockSize, size);
+
+         this.factorPanel(a, pivot, kb, ke);
+
+         if (ke < size) {
+            this.solveU12(a, pivot, kb, ke);
+            this.updateTrailing(a, pivot, kb, ke, ke, size, ke, size);
+         }
+      }
+
+      return new LUFactorization(size, a, pivot);
+   }
+
+   // elimination restricted to the panel columns [kb, ke)
+   private void factorPanel(DenseMatrix a, int[] pivot, int kb, int ke) {
+      int size = a.getNumRows();
+      int ld = a.getLeadingDimension();
+      double[] data = a.getData();
+
+      for (int k = kb; k < ke; k++) {
+
+         int maxRow = LUFactorization.findPivotRow(a, pivot, k);
+         LUFactorization.swapPivots(pivot, k, maxRow);
+
+         int pivotBase = pivot[k] * ld;
+         double pivotVal = data[pivotBase + k];
+         for (int i = k + 1; i < size; i++) {
+            int rowBase = pivot[i] * ld;
+            double ratio = data[rowBase + k] / pivotVal;
+            data[rowBase + k] = ratio;
+
+            for (int j = k + 1; j < ke; j++) {
+               data[rowBase + j] = data[rowBase + j] - (data[pivotBase + j] * ratio);
+            }
+         }
+      }
+   }
+
+   // U12 = L11^-1 * A12, unit lower triangular so no divides
+   private void solveU12(DenseMatrix a, int[] pivot, int kb, int ke) {
+      int size = a.getNumCols();
+      int ld = a.getLeadingDimension();
+      double[] data = a.getData();
+
+      for (int k = kb; k < ke; k++) {
+         int pivotBase = pivot[k] * ld;
+         for (int i = k + 1; i < ke; i++) {
+            int rowBase = pivot[i] * ld;
+            double ratio = data[rowBase + k];
+            for (int j = ke; j < size; j++) {
+               data[rowBase + j] = data[rowBase + j] - (data[pivotBase + j] * ratio);
+            }
+         }
+      }
+   }
+
+   // A22[rows, cols] -= L21[rows, kb..ke] * U12[kb..ke, cols]
+   //    per column tile the U12 tile is packed 4 columns at a time,
+   //    k major inside each 4 column panel, then every 4 row strip of
+   //    L21 is packed and swept across the panels by updateMicroTile.
+   //    the columns past the last panel are packed k major behind them,
+   //    rows past the last strip go row by row against the pivot rows
+   void updateTrailing(DenseMatrix a, int[] pivot, int kb, int ke,
+         int rowStart, int rowEnd, int colStart, int colEnd) {
+      int ld = a.getLeadingDimension();
+      double[] data = a.getData();
+      int depth = ke - kb;
+
+      int maxTile = Math.min(this.columnTile, colEnd - colStart);
+      double[] uPack = new double[depth * maxTile];
+      double[] lPack = new double[depth * MICRO_ROWS];
+      int rowSplit = rowStart + ((rowEnd - rowStart) / MICRO_ROWS) * MICRO_ROWS;
+
+      for (int jt = colStart; jt < colEnd; jt += this.columnTile) {
+         int tile = Math.min(this.columnTile, colEnd - jt);
+         int colSplit = (tile / MICRO_COLS) * MICRO_COLS;
+         int tail = tile - colSplit;
+         int tailStart = colSplit * depth;
+
+         for (int k = 0; k < depth; k++) {
+            int pivotBase = pivot[kb + k] * ld + jt;
+            for (int j = 0; j < colSplit; j += MICRO_COLS) {
+               int packed = j * depth + MICRO_COLS * k;
+               uPack[packed] = data[pivotBase + j];
+               uPack[packed + 1] = data[pivotBase + j + 1];
+               uPack[packed + 2] = data[pivotBase + j + 2];
+               uPack[packed + 3] = data[pivotBase + j + 3];
+            }
+            for (int j = 0; j < tail; j++) {
+               uPack[tailStart + k * tail + j] = data[pivotBase + colSplit + j];
+            }
+         }
+
+         for (int i = rowStart; i < rowSplit; i += MICRO_ROWS) {
+            int row0 = pivot[i] * ld;
+            int row1 = pivot[i + 1] * ld;
+            int row2 = pivot[i + 2] * ld;
+            int row3 = pivot[i + 3] * ld;
+            for (int k = 0; k < depth; k++) {
+               lPack[4 * k] = data[row0 + kb + k];
+               lPack[4 * k + 1] = data[row1 + kb + k];
+               lPack[4 * k + 2] = data[row2 + kb + k];
+               lPack[4 * k + 3] = data[row3 + kb + k];
+            }
+            for (int j = 0; j < colSplit; j += MICRO_COLS) {
+               updateMicroTile(data, row0 + jt + j, row1 + jt + j, row2 + jt + j, row3 + jt + j,
+                     lPack, uPack, j * depth, depth);
+            }
+            for (int j = 0; j < tail; j++) {
+               int col = jt + colSplit + j;
+               updateColumn(data, row0 + col, lPack, 0, uPack, tailStart + j, tail, depth);
+               updateColumn(data, row1 + col, lPack, 1, uPack, tailStart + j, tail, depth);
+               updateColumn(data, row2 + col, lPack, 2, uPack, tailStart + j, tail, depth);
+               updateColumn(data, row3 + col, lPack, 3, uPack, tailStart + j, tail, depth);
+            }
+         }
+
+         for (int i = rowSplit; i < rowEnd; i++) {
+            int rowBase = pivot[i] * ld;
+            for (int k = kb; k < ke; k++) {
+               this.vectorOps.subtractScaled(data, rowBase + jt, data, pivot[k] * ld + jt, data[rowBase + k], tile);
+            }
+         }
+      }
+   }
+
+   // 4 x 4 block of A22 held in registers over the whole depth, so every
+   // loaded L and U value is used 4 times instead of once. each element
+   // still takes its updates one k at a time, in order, as c - u * l
+   private static void updateMicroTile(double[] data, int c0, int c1, int c2, int c3,
+         double[] lPack, double[] uPack, int uPanel, int depth) {
+      double a00 = data[c0], a01 = data[c0 + 1], a02 = data[c0 + 2], a03 = data[c0 + 3];
+      double a10 = data[c1], a11 = data[c1 + 1], a12 = data[c1 + 2], a13 = data[c1 + 3];
+      double a20 = data[c2], a21 = data[c2 + 1], a22 = data[c2 + 2], a23 = data[c2 + 3];
+      double a30 = data[c3], a31 = data[c3 + 1], a32 = data[c3 + 2], a33 = data[c3 + 3];
+
+      for (int k = 0; k < 4 * depth; k += 4) {
+         double l0 = lPack[k], l1 = lPack[k + 1], l2 = lPack[k + 2], l3 = lPack[k + 3];
+         int u = uPanel + k;
+         double u0 = uPack[u], u1 = uPack[u + 1], u2 = uPack[u + 2], u3 = uPack[u + 3];
+         a00 = a00 - (u0 * l0); a01 = a01 - (u1 * l0); a02 = a02 - (u2 * l0); a03 = a03 - (u3 * l0);
+         a10 = a10 - (u0 * l1); a11 = a11 - (u1 * l1); a12 = a12 - (u2 * l1); a13 = a13 - (u3 * l1);
+         a20 = a20 - (u0 * l2); a21 = a21 - (u1 * l2); a22 = a22 - (u2 * l2); a23 = a23 - (u3 * l2);
+         a30 = a30 - (u0 * l3); a31 = a31 - (u1 * l3); a32 = a32 - (u2 * l3); a33 = a33 - (u3 * l3);
+      }
+
+      data[c0] = a00; data[c0 + 1] = a01; data[c0 + 2] = a02; data[c0 + 3] = a03;
+      data[c1] = a10; data[c1 + 1] = a11; data[c1 + 2] = a12; data[c1 + 3] = a13;
+      data[c2] = a20; data[c2 + 1] = a21; data[c2 + 2] = a22; data[c2 + 3] = a23;
+      data[c3] = a30; data[c3 + 1] = a31; data[c3 + 2] = a32; data[c3 + 3] = a33;
+   }
+
+   // one element of a 4 row strip past the last whole micro tile
+   private static void updateColumn(double[] data, int c, double[] lPack, int r,
+         double[] uPack, int uCol, int uStride, int depth) {
+      double acc = data[c];
+      for (int k = 0; k < depth; k++) {
+         acc = acc - (uPack[uCol + k * uStride] * lPack[4 * k + r]);
+      }
+      data[c] = acc;
+   }
+
+   /* Getters */
+   public int getBlockSize() {
+      return blockSize;
+   }
+
+   public int getColumnTile() {
+      return columnTile;
+   }
+
+   public int getMinBlockedSize() {
+      return minBlockedSize;
+   }
+
+}
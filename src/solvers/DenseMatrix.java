@@ -0,0 +1,127 @@
+package solvers;
+
+/* * * * * * * * * * * * * * *
+ *  Dense matrix stored row major in one
+ * contiguous double[]
+ *
+ * element (i, j) lives at data[i * ld + j] where
+ * ld, the leading dimension, is >= numCols. one
+ * flat block instead of an array of row arrays
+ * keeps neighbouring rows close in memory and
+ * lets kernels walk a row with a single index
+ *
+ * as an EntryOperator it is assumed square
+ * * * * * * * * * * * * * * */
+public class DenseMatrix implements EntryOperator {
+
+   private final int numRows;
+   private final int numCols;
+   private final int ld;
+   private final double[] data;
+
+   public DenseMatrix(int numRows, int numCols) {
+      this(numRows, numCols, numCols);
+   }
+
+   public DenseMatrix(int numRows, int numCols, int ld) {
+      if (ld < numCols) {
+         throw new IllegalArgumentException("DenseMatrix: leading dimension " + ld + " is less than numCols " + numCols);
+      }
+      this.numRows = numRows;
+      this.numCols = numCols;
+      this.ld = ld;
+      this.data = new double[numRows * ld];
+   }
+
+   // wraps data as a numRows x numCols matrix with ld = numCols, no copy
+   DenseMatrix(int numRows, int numCols, double[] data) {
+      if (data.length != numRows * numCols) {
+         throw new IllegalArgumentException("DenseMatrix: " + data.length + " values for a " + numRows + " x " + numCols + " matrix");
+      }
+      this.numRows = numRows;
+      this.numCols = numCols;
+      this.ld = numCols;
+      this.data = data;
+   }
+
+   public static DenseMatrix fromArray(double[][] a, int numRows, int numCols) {
+      DenseMatrix m = new DenseMatrix(numRows, numCols);
+      for (int i = 0; i < numRows; i++) {
+         System.arraycopy(a[i], 0, m.data, i * m.ld, numCols);
+      }
+      return m;
+   }
+
+   public DenseMatrix copy() {
+      DenseMatrix m = new DenseMatrix(this.numRows, this.numCols, this.ld);
+      System.arraycopy(this.data, 0, m.data, 0, this.data.length);
+      return m;
+   }
+
+   public double[][] toArray() {
+      double[][] a = new double[this.numRows][this.numCols];
+      for (int i = 0; i < this.numRows; i++) {
+         System.arraycopy(this.data, i * this.ld, a[i], 0, this.numCols);
+      }
+      return a;
+   }
+
+   // y = this * x
+   public void multiply(double[] x, double[] y) {
+      for (int i = 0; i < this.numRows; i++) {
+         int rowBase = i * this.ld;
+         double rollingSum = 0;
+         for (int j = 0; j < this.numCols; j++) {
+            rollingSum += this.data[rowBase + j] * x[j];
+         }
+         y[i] = rollingSum;
+      }
+   }
+
+   @Override
+   public int getSize() {
+      return this.numRows;
+   }
+
+   @Override
+   public void apply(double[] x, double[] y) {
+      this.multiply(x, y);
+   }
+
+   @Override
+   public double getEntry(int i, int j) {
+      return this.data[i * this.ld + j];
+   }
+
+   /* Specific getters and setters*/
+   public double get(int i, int j) {
+      return this.data[i * this.ld + j];
+   }
+
+   public void set(int i, int j, double val) {
+      this.data[i * this.ld + j] = val;
+   }
+
+   public int rowOffset(int i) {
+      return i * this.ld;
+   }
+
+   /* Generic getters */
+   public int getNumRows() {
+      return numRows;
+   }
+
+   public int getNumCols() {
+      return numCols;
+   }
+
+   public int getLeadingDimension() {
+      return ld;
+   }
+
+   // backing array, element (i, j) is data[i * ld + j]
+   public double[] getData() {
+      return data;
+   }
+
+}
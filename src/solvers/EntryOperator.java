@@ -0,0 +1,16 @@
+package solvers;
+
+/* * * * * * * * * * * * * * *
+ *  Linear operator whose single entries can be
+ * read without forming the matrix
+ *
+ * enough to build a block preconditioner from the
+ * near diagonal blocks of an operator that is never
+ * stored whole
+ * * * * * * * * * * * * * * */
+public interface EntryOperator extends LinearOperator {
+
+   // A(i, j)
+   double getEntry(int i, int j);
+
+}
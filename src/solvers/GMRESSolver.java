@@ -0,0 +1,224 @@
+package solvers;
+
+import java.util.Arrays;
+
+/* * * * * * * * * * * * * * *
+ *  Restarted GMRES(m) with right preconditioning
+ *
+ * builds an orthonormal Krylov basis of A M^-1 by
+ * modified Gram Schmidt, keeps the Hessenberg
+ * least squares problem triangular with Givens
+ * rotations, and so knows the residual norm at
+ * every step without forming x. after m steps x is
+ * updated and the basis rebuilt from the new residual
+ *
+ * right preconditioning means the residual being
+ * driven down is the true b - A x, so tolerance is
+ * directly the relative residual ||b - A x|| / ||b||
+ *
+ * each iteration is one operator apply, O(n^2) for
+ * a dense operator, instead of the O(n^3) factor
+ *
+ * convergence info of the last solve is kept on the
+ * instance, use one solver per thread
+ * * * * * * * * * * * * * * */
+public class GMRESSolver {
+
+   // the vortex panel system stalls with short restarts as panels get finer
+   public static final int DEFAULT_RESTART = 150;
+   public static final int DEFAULT_MAX_ITERATIONS = 1000;
+
+   private final int restart;
+   private final double tolerance;
+   private final int maxIterations;
+
+   // results of the last solve
+   private int iterations;
+   private double relativeResidual;
+   private boolean converged;
+
+   public GMRESSolver(double tolerance) {
+      this(DEFAULT_RESTART, tolerance, DEFAULT_MAX_ITERATIONS);
+   }
+
+   public GMRESSolver(int restart, double tolerance, int maxIterations) {
+      if (restart < 1 || maxIterations < 1 || !(tolerance > 0)) {
+         throw new IllegalArgumentException("GMRESSolver: restart, tolerance and max iterations must be positive");
+      }
+      this.restart = restart;
+      this.tolerance = tolerance;
+      this.maxIterations = maxIterations;
+   }
+
+   // solves A x = b from x0 (zeros when null), preconditioner may be null
+   // check hasConverged() afterwards, x is the best iterate either way
+   public double[] solve(LinearOperator a, double[] b, double[] x0, Preconditioner m) {
+      int n = a.getSize();
+      double[] x = (x0 == null) ? new double[n] : x0.clone();
+
+      this.iterations = 0;
+      this.converged = false;
+
+      double bNorm = norm(b);
+      if (bNorm == 0) {
+         this.relativeResidual = 0;
+         this.converged = true;
+         return new double[n];
+      }
+      double target = this.tolerance * bNorm;
+
+      double[][] v = new double[this.restart + 1][n];
+      double[][] h = new double[this.restart + 1][this.restart];
+      double[] cs = new double[this.restart];
+      double[] sn = new double[this.restart];
+      double[] g = new double[this.restart + 1];
+      double[] y = new double[this.restart];
+      double[] w = new double[n];
+      double[] z = new double[n];
+
+      double[] r = this.residual(a, b, x, w);
+      double beta = norm(r);
+
+      while (beta > target && this.iterations < this.maxIterations) {
+
+         for (int i = 0; i < n; i++) {
+            v[0][i] = r[i] / beta;
+         }
+         Arrays.fill(g, 0);
+         g[0] = beta;
+
+         int k = 0;
+         while (k < this.restart && this.iterations < this.maxIterations) {
+            this.iterations++;
+
+            // w = A M^-1 v_k
+            precondition(m, v[k], z);
+            a.apply(z, w);
+
+            // modified Gram Schmidt against the basis so far
+            for (int j = 0; j <= k; j++) {
+               double hjk = dot(w, v[j]);
+               h[j][k] = hjk;
+               for (int i = 0; i < n; i++) {
+                  w[i] = w[i] - (hjk * v[j][i]);
+               }
+            }
+            double wNorm = norm(w);
+            h[k + 1][k] = wNorm;
+            if (wNorm != 0) {
+               for (int i = 0; i < n; i++) {
+                  v[k + 1][i] = w[i] / wNorm;
+               }
+            }
+
+            // previous rotations on the new column, then a new one to zero h[k+1][k]
+            for (int j = 0; j < k; j++) {
+               double temp = (cs[j] * h[j][k]) + (sn[j] * h[j + 1][k]);
+               h[j + 1][k] = (-sn[j] * h[j][k]) + (cs[j] * h[j + 1][k]);
+               h[j][k] = temp;
+            }
+            double denom = Math.hypot(h[k][k], h[k + 1][k]);
+            if (denom == 0) {
+               throw new ArithmeticException("GMRESSolver: breakdown, operator is singular on the Krylov space");
+            }
+            cs[k] = h[k][k] / denom;
+            sn[k] = h[k + 1][k] / denom;
+            h[k][k] = denom;
+            h[k + 1][k] = 0;
+            g[k + 1] = -sn[k] * g[k];
+            g[k] = cs[k] * g[k];
+
+            k++;
+            // lucky breakdown means the basis already holds the solution
+            if (Math.abs(g[k]) <= target || wNorm == 0) {
+               break;
+            }
+         }
+
+         // y = H^-1 g, then x += M^-1 V y
+         for (int i = k - 1; i >= 0; i--) {
+            double val = g[i];
+            for (int j = i + 1; j < k; j++) {
+               val = val - (h[i][j] * y[j]);
+            }
+            y[i] = val / h[i][i];
+         }
+         Arrays.fill(w, 0);
+         for (int j = 0; j < k; j++) {
+            for (int i = 0; i < n; i++) {
+               w[i] = w[i] + (y[j] * v[j][i]);
+            }
+         }
+         precondition(m, w, z);
+         for (int i = 0; i < n; i++) {
+            x[i] = x[i] + z[i];
+         }
+
+         // restart from the true residual so round off in the recurrence cannot hide
+         r = this.residual(a, b, x, w);
+         beta = norm(r);
+      }
+
+      this.relativeResidual = beta / bNorm;
+      this.converged = beta <= target;
+      return x;
+   }
+
+   // r = b - A x, work is scratch of length n
+   private double[] residual(LinearOperator a, double[] b, double[] x, double[] work) {
+      a.apply(x, work);
+      double[] r = new double[b.length];
+      for (int i = 0; i < b.length; i++) {
+         r[i] = b[i] - work[i];
+      }
+      return r;
+   }
+
+   private static void precondition(Preconditioner m, double[] r, double[] z) {
+      if (m == null) {
+         System.arraycopy(r, 0, z, 0, r.length);
+      } else {
+         m.apply(r, z);
+      }
+   }
+
+   private static double dot(double[] u, double[] v) {
+      double rollingSum = 0;
+      for (int i = 0; i < u.length; i++) {
+         rollingSum += u[i] * v[i];
+      }
+      return rollingSum;
+   }
+
+   private static double norm(double[] u) {
+      return Math.sqrt(dot(u, u));
+   }
+
+   /* Getters */
+   public int getRestart() {
+      return restart;
+   }
+
+   public double getTolerance() {
+      return tolerance;
+   }
+
+   public int getMaxIterations() {
+      return maxIterations;
+   }
+
+   // iterations (operator applies) of the last solve
+   public int getIterations() {
+      return iterations;
+   }
+
+   // ||b - A x|| / ||b|| of the last solve
+   public double getRelativeResidual() {
+      return relativeResidual;
+   }
+
+   public boolean hasConverged() {
+      return converged;
+   }
+
+}
@@ -0,0 +1,228 @@
+package solvers;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import dataContainers.GeometricIntegral;
+import geometryContainers.PanelSet;
+
+/* * * * * * * * * * * * * * *
+ *  Builds the normal and tangential geometric
+ * integrals of a paneled airfoil
+ *
+ * every row (control point) is independent of
+ * the others, so above a panel count threshold
+ * the rows are split across a fork join pool.
+ * each cell is computed by the same code on any
+ * thread so the parallel result is bit identical
+ * to the serial one. works straight off the flat
+ * PanelSet arrays, nothing is allocated per cell
+ *
+ * the tangential integral is only ever multiplied by
+ * gamma, so it can be left out of the assembly and
+ * its product streamed a row at a time instead, the
+ * same cells in the same order as the stored matrix
+ * * * * * * * * * * * * * * */
+public class GeometricIntegralAssembler {
+
+   public static final int DEFAULT_PARALLEL_THRESHOLD = 300;
+   private static final int ROWS_PER_TASK = 16;
+
+   private final PanelSet panels;
+   private final int numPanels;
+
+   public GeometricIntegralAssembler(PanelSet panels) {
+      this.panels = panels;
+      this.numPanels = panels.getNumberOfPanels();
+   }
+
+   public GeometricIntegral assemble(int parallelThreshold) {
+      return this.assemble(parallelThreshold, true);
+   }
+
+   // without the tangential integral its matrix is null
+   public GeometricIntegral assemble(int parallelThreshold, boolean withTangential) {
+      int n = this.numPanels;
+      GeometricIntegral geomInteg = new GeometricIntegral(n, n, new double[n][n],
+            withTangential ? new double[n][n] : null);
+
+      if (this.numPanels >= parallelThreshold) {
+         ForkJoinPool.commonPool().invoke(new RowBlockTask(geomInteg, 0, this.numPanels));
+      } else {
+         this.calculateRows(geomInteg, 0, this.numPanels);
+      }
+
+      return geomInteg;
+   }
+
+   private void calculateRows(GeometricIntegral geomInteg, int rowStart, int rowEnd) {
+      double[][] normal = geomInteg.getNormalIntegral();
+      double[][] tangential = geomInteg.getTangentialIntegral();
+      for (int i = rowStart; i < rowEnd; i++) {
+         this.calculateRow(i, normal[i], (tangential == null) ? null : tangential[i]);
+      }
+   }
+
+   // y[k][i] = - sum_j tangential[i][j] * x[k][j] for every vector k,
+   //    recomputing one tangential row at a time, O(n) memory
+   public void multiplyTangential(double[][] x, double[][] y, int parallelThreshold) {
+      if (this.numPanels >= parallelThreshold) {
+         ForkJoinPool.commonPool().invoke(new TangentialProductTask(x, y, 0, this.numPanels));
+      } else {
+         this.multiplyTangentialRows(x, y, 0, this.numPanels);
+      }
+   }
+
+   private void multiplyTangentialRows(double[][] x, double[][] y, int rowStart, int rowEnd) {
+      double[] tangRow = new double[this.numPanels];
+      for (int i = rowStart; i < rowEnd; i++) {
+         this.calculateRow(i, null, tangRow);
+         for (int k = 0; k < x.length; k++) {
+            double[] xk = x[k];
+            double rollingSum = 0;
+            for (int j = 0; j < this.numPanels; j++) {
+               rollingSum -= xk[j] * tangRow[j];
+            }
+            y[k][i] = rollingSum;
+         }
+      }
+   }
+
+   // either row may be null if it is not wanted
+   public void calculateRow(int i, double[] normalRow, double[] tangentialRow) {
+
+      /* Calculation Convention
+       *    i = index of control point
+       *    j = loop over all panels != i, if j==i call it 0
+       *
+       *    Components of solved integral
+       *    A  = - (x_i - X_j) cos(phi_j) - (y_i - Y_j) sin(phi_j)
+       *    B  = (x_i - X_j)^2 - (y_i - Y_j)^2
+       *    Cn = - cos(phi_i - phi_j)
+       *    Ct = sin (phi_j - phi_i)
+       *    Dn = (x_i - X_j) cos(phi_i) + (y_i - Y_j) sin(phi_j)
+       *    Dt = (x_i - X_j) sin(phi_i) - (y_i - Y_j) cos(phi_i)
+       *    E  = (B - A^2) ^ 0.5
+       *
+       *    geometricIntegral = (C_n,t / 2) * ( ln( s_j^2 + 2*A*s_j + B / B) + ((D_n,t - A*C) / E)(atan( (s_j+A) /E ) - atan(A/E) ) )
+       *
+       * * * * * * * * */
+      double[] cell = new double[2];
+      for (int j = 0; j < this.numPanels; j++) {
+         this.calculateCell(i, j, cell);
+         if (normalRow != null) {
+            normalRow[j] = cell[0];
+         }
+         if (tangentialRow != null) {
+            tangentialRow[j] = cell[1];
+         }
+      }
+   }
+
+   // cell[0] = normal, cell[1] = tangential integral of panel j at control point i
+   public void calculateCell(int i, int j, double[] cell) {
+      if (i == j) {
+         // is zero
+         cell[0] = 0;
+         cell[1] = 0;
+         return;
+      }
+
+      double[] phi = this.panels.getPhi();
+      double[] s = this.panels.getS();
+      double[] sinPhi = this.panels.getSinPhi();
+      double[] cosPhi = this.panels.getCosPhi();
+
+      double xi_minus_Xj = this.panels.getXc()[i] - this.panels.getX()[j];
+      double yi_minus_Yj = this.panels.getYc()[i] - this.panels.getY()[j];
+      double sinPhi_i = sinPhi[i];
+      double cosPhi_i = cosPhi[i];
+
+      double A = (-1*xi_minus_Xj * cosPhi[j]) - (yi_minus_Yj * sinPhi[j]);
+      double B = Math.pow( xi_minus_Xj , 2) + Math.pow( yi_minus_Yj , 2);
+      double Cn = -1 * Math.cos( phi[i] - phi[j] );
+      double Dn = xi_minus_Xj * cosPhi_i + yi_minus_Yj * sinPhi_i;
+      double Ct = Math.sin( phi[j] - phi[i] );
+      double Dt = (xi_minus_Xj * sinPhi_i) - (yi_minus_Yj * cosPhi_i);
+      double E = Math.sqrt( (B - Math.pow(A, 2)) );
+
+      if ( Double.isNaN(E) ) {
+         E = 0;
+      }
+
+
+      double leftHalf =  Math.log( ( (Math.pow(s[j], 2) + 2*A*s[j] + B) / B) );
+
+      double rightHalf_n = ((Dn - A*Cn)/E) * ( Math.atan2((s[j] + A), E) - Math.atan2(A, E) );
+      double rightHalf_t = ((Dt - A*Ct)/E) * ( Math.atan2((s[j] + A), E) - Math.atan2(A, E) );
+
+      double normVal = ((Cn/2) *  leftHalf) + rightHalf_n  ;
+      double tanVal =  ((Ct/2) *  leftHalf) + rightHalf_t  ;
+
+
+      if ( Double.isNaN(normVal) ) {
+         normVal = 0;
+      }
+
+      if ( Double.isNaN(tanVal) ) {
+         tanVal = 0;
+      }
+
+      cell[0] = -1.0*normVal;
+      cell[1] = tanVal;
+   }
+
+   // splits the row range in half until it is small enough to do directly
+   private class RowBlockTask extends RecursiveAction {
+
+      private static final long serialVersionUID = 1L;
+      private final GeometricIntegral geomInteg;
+      private final int rowStart;
+      private final int rowEnd;
+
+      RowBlockTask(GeometricIntegral geomInteg, int rowStart, int rowEnd) {
+         this.geomInteg = geomInteg;
+         this.rowStart = rowStart;
+         this.rowEnd = rowEnd;
+      }
+
+      @Override
+      protected void compute() {
+         if (this.rowEnd - this.rowStart <= ROWS_PER_TASK) {
+            calculateRows(this.geomInteg, this.rowStart, this.rowEnd);
+            return;
+         }
+         int mid = (this.rowStart + this.rowEnd) >>> 1;
+         invokeAll(new RowBlockTask(this.geomInteg, this.rowStart, mid),
+               new RowBlockTask(this.geomInteg, mid, this.rowEnd));
+      }
+   }
+
+   private class TangentialProductTask extends RecursiveAction {
+
+      private static final long serialVersionUID = 1L;
+      private final double[][] x;
+      private final double[][] y;
+      private final int rowStart;
+      private final int rowEnd;
+
+      TangentialProductTask(double[][] x, double[][] y, int rowStart, int rowEnd) {
+         this.x = x;
+         this.y = y;
+         this.rowStart = rowStart;
+         this.rowEnd = rowEnd;
+      }
+
+      @Override
+      protected void compute() {
+         if (this.rowEnd - this.rowStart <= ROWS_PER_TASK) {
+            multiplyTangentialRows(this.x, this.y, this.rowStart, this.rowEnd);
+            return;
+         }
+         int mid = (this.rowStart + this.rowEnd) >>> 1;
+         invokeAll(new TangentialProductTask(this.x, this.y, this.rowStart, mid),
+               new TangentialProductTask(this.x, this.y, mid, this.rowEnd));
+      }
+   }
+
+}
@@ -1,6 +1,14 @@
 package solvers;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import dataContainers.AirfoilPolar;
+import dataContainers.SectionPolar;
 import geometryContainers.AirfoilGeometry;
+import geometryContainers.GeometryKey;
 import geometryContainers.PropellerGeometry;
 
 public class GoldsteinVortexTheorySolver {
@@ -31,9 +39,21 @@ public class GoldsteinVortexTheorySolver {
    private VortexPanelSolver vpm;
    private double[] Cl;
    private double[] Cd;
+   private RadialStationEvaluator stationEvaluator;   // null runs the stations serially on vpm
+   private boolean vpmCoefficientsOnly;   // section Cl from circulation
+
+   // section polar tables, used in place of per iteration VPM solves when enabled
+   private boolean sectionPolarMode;
+   private boolean polarAccuracyCheck;
+   private SectionPolar.INTERPOLATION polarInterpolation;
+   private double polarAlphaStartRad;
+   private double polarAlphaEndRad;
+   private double polarAlphaStepRad;
+   private final Map<GeometryKey, SectionPolar> sectionPolars = new ConcurrentHashMap<GeometryKey, SectionPolar>();
 
    // internal airfoils   
    private double[] zeroLiftAlphas;   
+   private ZeroLiftAlphaSolver zeroLiftAlphaSolver;
    private final double resolutionEpsilon = .000001;
 
    // convergence variables
@@ -45,12 +65,20 @@ public class GoldsteinVortexTheorySolver {
 
    public GoldsteinVortexTheorySolver() { 
       this.vpm = new VortexPanelSolver();
+      this.vpm.setSuperpositionMode(true);
+      this.zeroLiftAlphaSolver = new ZeroLiftAlphaSolver();
+      this.stationEvaluator = new RadialStationEvaluator(ForkJoinPool.commonPool());
+      this.setSectionPolarDefaults();
       this.maxIterations = this.DEFAULT_MAX_ITERATIONS;
    }
 
    public GoldsteinVortexTheorySolver(PropellerGeometry prop) { 
       this.propeller = prop;
       this.vpm = new VortexPanelSolver();
+      this.vpm.setSuperpositionMode(true);
+      this.zeroLiftAlphaSolver = new ZeroLiftAlphaSolver();
+      this.stationEvaluator = new RadialStationEvaluator(ForkJoinPool.commonPool());
+      this.setSectionPolarDefaults();
       this.maxIterations = this.DEFAULT_MAX_ITERATIONS;
    }
 
@@ -58,78 +86,36 @@ public class GoldsteinVortexTheorySolver {
       this.propeller = prop;
       this.Vinf = Vinfinity;
       this.vpm = new VortexPanelSolver();
+      this.vpm.setSuperpositionMode(true);
+      this.zeroLiftAlphaSolver = new ZeroLiftAlphaSolver();
+      this.stationEvaluator = new RadialStationEvaluator(ForkJoinPool.commonPool());
+      this.setSectionPolarDefaults();
       this.maxIterations = this.DEFAULT_MAX_ITERATIONS;
    }
 
+   private void setSectionPolarDefaults() {
+      this.sectionPolarMode = false;
+      this.polarAccuracyCheck = true;
+      this.polarInterpolation = SectionPolar.INTERPOLATION.MONOTONE_CUBIC;
+      this.polarAlphaStartRad = -15.0 * (Math.PI / 180);
+      this.polarAlphaEndRad = 15.0 * (Math.PI / 180);
+      this.polarAlphaStepRad = 0.5 * (Math.PI / 180);
+   }
+
    public double[] calculateAllPropellerZeroLiftAlpha() {
       double[] zla = new double[this.propeller.getNumDescPoints()];
-      String lastAirfoilType = "";
-      double zeroLiftAngle = 0.0;
       for(int i = 0; i < this.propeller.getNumDescPoints(); i++) {
-
-         AirfoilGeometry thisAf = this.propeller.getAirfoilAtRadialIndex(i);
-         String thisAirfoilType = thisAf.getAirfoilType();
-
-         if(thisAirfoilType.equalsIgnoreCase("custom")) {
-            zeroLiftAngle = this.calculateZeroLiftAlpha(this.resolutionEpsilon, thisAf);
-
-         } else if( !lastAirfoilType.equalsIgnoreCase(thisAirfoilType) ) {
-            zeroLiftAngle = this.calculateZeroLiftAlpha(this.resolutionEpsilon, thisAf);
-            lastAirfoilType = thisAf.getAirfoilType();
-         } 
-
-
-         zla[i] = zeroLiftAngle;
-
+         // memoized per geometry, repeated sections are free
+         zla[i] = this.calculateZeroLiftAlpha(this.resolutionEpsilon, this.propeller.getAirfoilAtRadialIndex(i));
       }
+      this.zeroLiftAlphas = zla;
 
       return zla;
    }
 
    public double calculateZeroLiftAlpha(double eps, AirfoilGeometry af) {
       //returns alpha
-      double zeroLiftAlpha = 0.0;
-      double prevAfAlpha = af.getangleOfAttackRad();
-
-      VortexPanelSolver zvpm = new VortexPanelSolver();
-      zvpm.setVinfinity(1);
-
-      boolean inflectionDetect = true;
-      boolean wasLastRoundPositive = true;
-
-      double stepSize = 2.0 * (Math.PI / 180);
-
-      while (true) {
-
-         af.setangleOfAttackRad(zeroLiftAlpha);
-         zvpm.setAirfoil(af);         
-         zvpm.runVPMSolver();
-
-         if(zvpm.getCl() > +0.0) {                 
-            if(!wasLastRoundPositive) {
-               stepSize /= 2;
-            }            
-            wasLastRoundPositive = true;
-            zeroLiftAlpha -= stepSize;            
-         } else {            
-            if(wasLastRoundPositive) {
-               stepSize /= 2;
-            }            
-            wasLastRoundPositive = false;
-            zeroLiftAlpha += stepSize;            
-         }
-
-         //System.out.println("alpha(rad):" + zeroLiftAlpha + " | alpha(Deg):" + zeroLiftAlpha * (Math.PI/180) + 
-         //      " | stepSize:" + stepSize + " | wasLastRoundPositive:" + wasLastRoundPositive + " | Cl:" + zvpm.getCl());
-
-         if( Math.abs(zvpm.getCl()) < eps) {
-            break;
-         }
-
-      }
-
-      af.setangleOfAttackRad(prevAfAlpha);
-      return zeroLiftAlpha;
+      return this.zeroLiftAlphaSolver.getZeroLiftAlpha(af, eps);
    }
 
    public void calculateBeta_tip_rmt() {
@@ -137,22 +123,10 @@ public class GoldsteinVortexTheorySolver {
       this.beta_tip = new double[this.propeller.getNumDescPoints()];
 
       double[] rmt = this.propeller.getRmtAngle();      
-      String lastAirfoilType = "";
-      double zeroLiftAngle = 0.0;
+      double[] zla = this.calculateAllPropellerZeroLiftAlpha();
 
       for(int i = 0; i < this.propeller.getNumDescPoints(); i++) {
-         AirfoilGeometry thisAf = this.propeller.getAirfoilAtRadialIndex(i);
-         String thisAirfoilType = thisAf.getAirfoilType();
-
-         if(thisAirfoilType.equalsIgnoreCase("custom")) {
-            zeroLiftAngle = this.calculateZeroLiftAlpha(this.resolutionEpsilon, thisAf);
-
-         } else if( !lastAirfoilType.equalsIgnoreCase(thisAirfoilType) ) {
-            zeroLiftAngle = this.calculateZeroLiftAlpha(this.resolutionEpsilon, thisAf);
-            lastAirfoilType = thisAf.getAirfoilType();
-         } 
-
-         this.beta_tip[i] = rmt[i] - zeroLiftAngle;
+         this.beta_tip[i] = rmt[i] - zla[i];
       }
 
    }
@@ -374,19 +348,34 @@ public class GoldsteinVortexTheorySolver {
    // Cl / Cd calculations
    //
 
-   private void calculateVPMParameters() {
+   private void calculateVPMParameters() throws Exception {
       this.Cl = new double [this.propeller.getNumDescPoints()];
       this.Cd = new double [this.propeller.getNumDescPoints()];
 
+      // alpha_B per station, the airfoils themselves are not modified
+      // since several stations usually share one AirfoilGeometry
+      double[] alphaB = new double [this.propeller.getNumDescPoints()];
+      for (int i = 0; i < this.propeller.getNumDescPoints() - 1; i++) {
+         alphaB[i] = this.beta_aero[i] - this.eps_inf[i] - this.eps_i[i];
+      }
+
+      if (this.sectionPolarMode) {
+         this.calculateSectionPolarParameters(alphaB);
+         return;
+      }
+
+      if (this.stationEvaluator != null) {
+         this.stationEvaluator.evaluate(this.propeller, alphaB, this.propeller.getNumDescPoints() - 1, this.Cl, this.Cd);
+         return;
+      }
+
       double rad2deg = (180.0/Math.PI);
       for (int i = 0; i < this.propeller.getNumDescPoints() - 1; i++) {
 
-         // set alpha_B
-         this.propeller.getAirfoilAtRadialIndex(i).setangleOfAttackRad(this.beta_aero[i] - this.eps_inf[i] - this.eps_i[i]);
          AirfoilGeometry thisAirfoil = this.propeller.getAirfoilAtRadialIndex(i);
          this.vpm.setAirfoil(thisAirfoil );
          this.vpm.setVinfinity(1); // this is speed coming in, set to 1 for coeff
-         this.vpm.runVPMSolver();
+         this.vpm.runVPMSolver(alphaB[i]); // superposition mode, only O(n) per station once the airfoil is solved
 
          //System.out.println("Beta Aero:" + (this.beta_aero[i]*rad2deg) + " | eps inf: " + 
          //(this.eps_inf[i]*rad2deg) + " | Cl:" + this.vpm.getCl() + " | Chord: " + this.propeller.getChordsAtIndex(i));
@@ -398,6 +387,46 @@ public class GoldsteinVortexTheorySolver {
 
    }
 
+   // table lookups instead of panel solves, exact VPM solve outside the table when checking accuracy
+   private void calculateSectionPolarParameters(double[] alphaB) {
+      for (int i = 0; i < this.propeller.getNumDescPoints() - 1; i++) {
+
+         AirfoilGeometry thisAirfoil = this.propeller.getAirfoilAtRadialIndex(i);
+         SectionPolar polar = this.getSectionPolar(thisAirfoil);
+
+         if (this.polarAccuracyCheck && !polar.isInRange(alphaB[i])) {
+            this.vpm.setAirfoil(thisAirfoil );
+            this.vpm.setVinfinity(1);
+            this.vpm.runVPMSolver(alphaB[i]);
+            this.Cl[i] = this.vpm.getCl() * this.propeller.getChordsAtIndex(i);
+            this.Cd[i] = this.vpm.getCd() * this.propeller.getChordsAtIndex(i);
+         } else {
+            this.Cl[i] = polar.getCl(alphaB[i]) * this.propeller.getChordsAtIndex(i);
+            this.Cd[i] = polar.getCd(alphaB[i]) * this.propeller.getChordsAtIndex(i);
+         }
+      }
+   }
+
+   // built once per unique section shape
+   public SectionPolar getSectionPolar(AirfoilGeometry af) {
+      GeometryKey key = af.getGeometryKey();
+      SectionPolar polar = this.sectionPolars.get(key);
+
+      if (polar == null || polar.getInterpolation() != this.polarInterpolation) {
+         VortexPanelSolver polarVpm = new VortexPanelSolver();
+         polarVpm.setAirfoil(af);
+         polarVpm.setVinfinity(1);
+         polarVpm.setSuperpositionMode(true);
+         polarVpm.setCoefficientsOnly(this.vpmCoefficientsOnly);
+         AirfoilPolar table = polarVpm.runPolar(this.polarAlphaStartRad, this.polarAlphaEndRad, this.polarAlphaStepRad);
+
+         polar = new SectionPolar(table, this.polarInterpolation);
+         this.sectionPolars.put(key, polar);
+      }
+
+      return polar;
+   }
+
    private double calcMagDifference(int size, double[] ary1, double[] ary2) {
       double result = 0.0;
       for (int i = 0; i < size; i++) {
@@ -493,6 +522,71 @@ public class GoldsteinVortexTheorySolver {
       this.vpm = vpm;
    }
 
+   public RadialStationEvaluator getStationEvaluator() {
+      return stationEvaluator;
+   }
+
+   // executor the radial stations run on, null runs them one after another on vpm
+   public void setStationExecutor(ExecutorService executor) {
+      if (executor == null) {
+         this.stationEvaluator = null;
+      } else {
+         this.stationEvaluator = new RadialStationEvaluator(executor);
+         this.stationEvaluator.setCoefficientsOnly(this.vpmCoefficientsOnly);
+      }
+   }
+
+   public boolean isVPMCoefficientsOnly() {
+      return vpmCoefficientsOnly;
+   }
+
+   // sections give Kutta Joukowski Cl. the section Cd the torque needs is
+   // still pressure integrated, so getCd() builds Vt and Cp at every
+   // station and the O(n^2) tangential sweep is paid either way (O(n) per
+   // station once the base solutions of a superposed airfoil are cached).
+   // this only changes which Cl is used, it does not save time. off by default
+   public void setVPMCoefficientsOnly(boolean vpmCoefficientsOnly) {
+      this.vpmCoefficientsOnly = vpmCoefficientsOnly;
+      this.vpm.setCoefficientsOnly(vpmCoefficientsOnly);
+      if (this.stationEvaluator != null) {
+         this.stationEvaluator.setCoefficientsOnly(vpmCoefficientsOnly);
+      }
+      this.sectionPolars.clear();
+   }
+
+   public boolean isSectionPolarMode() {
+      return sectionPolarMode;
+   }
+
+   public void setSectionPolarMode(boolean sectionPolarMode) {
+      this.sectionPolarMode = sectionPolarMode;
+   }
+
+   public boolean isPolarAccuracyCheck() {
+      return polarAccuracyCheck;
+   }
+
+   // true falls back to an exact VPM solve outside the table, false extrapolates the table
+   public void setPolarAccuracyCheck(boolean polarAccuracyCheck) {
+      this.polarAccuracyCheck = polarAccuracyCheck;
+   }
+
+   public SectionPolar.INTERPOLATION getPolarInterpolation() {
+      return polarInterpolation;
+   }
+
+   public void setPolarInterpolation(SectionPolar.INTERPOLATION polarInterpolation) {
+      this.polarInterpolation = polarInterpolation;
+   }
+
+   // changing the range drops any tables already built
+   public void setPolarRangeRad(double alphaStartRad, double alphaEndRad, double alphaStepRad) {
+      this.polarAlphaStartRad = alphaStartRad;
+      this.polarAlphaEndRad = alphaEndRad;
+      this.polarAlphaStepRad = alphaStepRad;
+      this.sectionPolars.clear();
+   }
+
    public double[] getCl() {
       return Cl;
    }
@@ -510,6 +604,16 @@ public class GoldsteinVortexTheorySolver {
    }
 
 
+   public ZeroLiftAlphaSolver getZeroLiftAlphaSolver() {
+      return zeroLiftAlphaSolver;
+   }
+
+   // share one solver (and its memoized angles) across GVT runs
+   public void setZeroLiftAlphaSolver(ZeroLiftAlphaSolver zeroLiftAlphaSolver) {
+      this.zeroLiftAlphaSolver = zeroLiftAlphaSolver;
+   }
+
+
    public double[] getZeta() {
       return zeta;
    }
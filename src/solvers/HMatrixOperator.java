@@ -0,0 +1,431 @@
+package solvers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import geometryContainers.PanelSet;
+
+/* * * * * * * * * * * * * * *
+ *  Hierarchical matrix (H-matrix) form of the
+ * geometric integral
+ *
+ * the matrix is cut into blocks along a
+ * PanelClusterTree. a block of two clusters far apart
+ * compared to their size, the upper surface seen from
+ * the far lower surface say, is smooth and so
+ * numerically low rank, it is kept as U V^T built by
+ * adaptive cross approximation (ACA) from a few of
+ * its rows and columns,
+ *
+ *    pick a row, residual row r = A(i, :) - U(i, :) V^T
+ *    pivot column j = argmax |r|, v = r / r(j)
+ *    residual column u = A(:, j) - U V(j, :)^T
+ *    stop when |u| |v| <= tolerance * |U V^T|_F
+ *
+ * so only O(rank (m + k)) cells of an m x k block
+ * are ever computed. blocks of clusters too close
+ * together are split further, down to the leaves,
+ * where they are filled dense. memory and assembly
+ * go as O(n log n) instead of n^2
+ *
+ * the normal blocks are built up front, the
+ * tangential ones on the first tangential product.
+ * row n - 1 of apply() is the Kutta row and entries
+ * read through getEntry() are exact
+ * * * * * * * * * * * * * * */
+public class HMatrixOperator implements InfluenceOperator {
+
+   public static final double DEFAULT_TOLERANCE = 1e-10;
+   // admissible when min cluster diameter <= eta * gap between the clusters
+   public static final double DEFAULT_ETA = 2;
+   public static final int DEFAULT_LEAF_SIZE = 32;
+   private static final int PARALLEL_THRESHOLD = GeometricIntegralAssembler.DEFAULT_PARALLEL_THRESHOLD;
+   private static final int BLOCKS_PER_TASK = 8;
+
+   private final PanelSet panels;
+   private final GeometricIntegralAssembler assembler;
+   private final PanelClusterTree tree;
+   private final int numPanels;
+   private final double tolerance;
+   private final double eta;
+
+   private final Block[] normalBlocks;
+   private Block[] tangentialBlocks;
+
+   public HMatrixOperator(PanelSet panels) {
+      this(panels, DEFAULT_TOLERANCE);
+   }
+
+   public HMatrixOperator(PanelSet panels, double tolerance) {
+      this(panels, tolerance, DEFAULT_ETA, DEFAULT_LEAF_SIZE);
+   }
+
+   public HMatrixOperator(PanelSet panels, double tolerance, double eta, int leafSize) {
+      if (tolerance <= 0 || eta <= 0) {
+         throw new IllegalArgumentException("HMatrixOperator: tolerance and eta must be positive");
+      }
+      this.panels = panels;
+      this.assembler = new GeometricIntegralAssembler(panels);
+      this.tree = new PanelClusterTree(panels, leafSize);
+      this.numPanels = panels.getNumberOfPanels();
+      this.tolerance = tolerance;
+      this.eta = eta;
+
+      this.normalBlocks = this.buildBlocks(0);
+   }
+
+   // blocks of the whole matrix with their cells filled, component 0 normal, 1 tangential
+   private Block[] buildBlocks(int component) {
+      List<Block> list = new ArrayList<Block>();
+      this.partition(0, 0, list);
+      Block[] blocks = list.toArray(new Block[list.size()]);
+
+      if (this.numPanels >= PARALLEL_THRESHOLD) {
+         ForkJoinPool.commonPool().invoke(new BuildTask(blocks, component, 0, blocks.length));
+      } else {
+         this.fillBlocks(blocks, component, 0, blocks.length);
+      }
+      return blocks;
+   }
+
+   private void partition(int rowNode, int colNode, List<Block> blocks) {
+      int[] start = this.tree.getNodeStart();
+      int[] end = this.tree.getNodeEnd();
+      int[] left = this.tree.getLeft();
+      double[] radius = this.tree.getRadius();
+
+      double gap = this.tree.distance(rowNode, colNode);
+      if (gap > 0 && 2 * Math.min(radius[rowNode], radius[colNode]) <= this.eta * gap) {
+         blocks.add(new Block(start[rowNode], end[rowNode], start[colNode], end[colNode], true));
+         return;
+      }
+
+      boolean rowLeaf = this.tree.isLeaf(rowNode);
+      boolean colLeaf = this.tree.isLeaf(colNode);
+      if (rowLeaf && colLeaf) {
+         blocks.add(new Block(start[rowNode], end[rowNode], start[colNode], end[colNode], false));
+      } else if (rowLeaf) {
+         this.partition(rowNode, left[colNode], blocks);
+         this.partition(rowNode, left[colNode] + 1, blocks);
+      } else if (colLeaf) {
+         this.partition(left[rowNode], colNode, blocks);
+         this.partition(left[rowNode] + 1, colNode, blocks);
+      } else {
+         for (int r = left[rowNode]; r <= left[rowNode] + 1; r++) {
+            for (int c = left[colNode]; c <= left[colNode] + 1; c++) {
+               this.partition(r, c, blocks);
+            }
+         }
+      }
+   }
+
+   private void fillBlocks(Block[] blocks, int component, int from, int to) {
+      double[] cell = new double[2];
+      for (int b = from; b < to; b++) {
+         Block block = blocks[b];
+         if (!block.admissible || !this.fillLowRank(block, component, cell)) {
+            this.fillDense(block, component, cell);
+         }
+      }
+   }
+
+   private void fillDense(Block block, int component, double[] cell) {
+      int numCols = block.colEnd - block.colStart;
+      block.dense = new double[(block.rowEnd - block.rowStart) * numCols];
+      for (int i = block.rowStart; i < block.rowEnd; i++) {
+         int rowBase = (i - block.rowStart) * numCols;
+         for (int j = block.colStart; j < block.colEnd; j++) {
+            this.assembler.calculateCell(i, j, cell);
+            block.dense[rowBase + j - block.colStart] = cell[component];
+         }
+      }
+   }
+
+   // ACA with partial pivoting, false if the block is not low rank enough to be worth it
+   private boolean fillLowRank(Block block, int component, double[] cell) {
+      int m = block.rowEnd - block.rowStart;
+      int k = block.colEnd - block.colStart;
+      // past this rank U V^T takes more memory than the dense block
+      int maxRank = (m * k) / (m + k);
+
+      List<double[]> us = new ArrayList<double[]>();
+      List<double[]> vs = new ArrayList<double[]>();
+      boolean[] usedRow = new boolean[m];
+      double[] row = new double[k];
+      double normSq = 0;
+      int pivotRow = 0;
+
+      while (us.size() < maxRank) {
+         usedRow[pivotRow] = true;
+
+         // residual of the pivot row
+         for (int j = 0; j < k; j++) {
+            this.assembler.calculateCell(block.rowStart + pivotRow, block.colStart + j, cell);
+            double val = cell[component];
+            for (int l = 0; l < us.size(); l++) {
+               val -= us.get(l)[pivotRow] * vs.get(l)[j];
+            }
+            row[j] = val;
+         }
+         int pivotCol = 0;
+         for (int j = 1; j < k; j++) {
+            if (Math.abs(row[j]) > Math.abs(row[pivotCol])) {
+               pivotCol = j;
+            }
+         }
+
+         if (row[pivotCol] != 0) {
+            double[] v = new double[k];
+            for (int j = 0; j < k; j++) {
+               v[j] = row[j] / row[pivotCol];
+            }
+            double[] u = new double[m];
+            for (int i = 0; i < m; i++) {
+               this.assembler.calculateCell(block.rowStart + i, block.colStart + pivotCol, cell);
+               double val = cell[component];
+               for (int l = 0; l < us.size(); l++) {
+                  val -= us.get(l)[i] * vs.get(l)[pivotCol];
+               }
+               u[i] = val;
+            }
+
+            // |S + u v^T|_F^2 = |S|_F^2 + |u|^2 |v|^2 + 2 sum_l (u . u_l)(v . v_l)
+            double uu = dot(u, u);
+            double vv = dot(v, v);
+            double cross = 0;
+            for (int l = 0; l < us.size(); l++) {
+               cross += dot(u, us.get(l)) * dot(v, vs.get(l));
+            }
+            normSq += (uu * vv) + (2 * cross);
+            us.add(u);
+            vs.add(v);
+
+            if (Math.sqrt(uu * vv) <= this.tolerance * Math.sqrt(normSq)) {
+               block.setLowRank(us, vs);
+               return true;
+            }
+         }
+
+         // next pivot, the unused row the last column says is least well matched
+         double[] lastU = us.isEmpty() ? null : us.get(us.size() - 1);
+         int next = -1;
+         for (int i = 0; i < m; i++) {
+            if (!usedRow[i] && (next < 0 || (lastU != null && Math.abs(lastU[i]) > Math.abs(lastU[next])))) {
+               next = i;
+            }
+         }
+         if (next < 0) {
+            // every row is matched exactly
+            block.setLowRank(us, vs);
+            return true;
+         }
+         pivotRow = next;
+      }
+      return false;
+   }
+
+   private static double dot(double[] a, double[] b) {
+      double sum = 0;
+      for (int i = 0; i < a.length; i++) {
+         sum += a[i] * b[i];
+      }
+      return sum;
+   }
+
+   private static void multiply(Block[] blocks, double[] x, double[] y) {
+      for (int i = 0; i < y.length; i++) {
+         y[i] = 0;
+      }
+      for (int b = 0; b < blocks.length; b++) {
+         blocks[b].multiplyAdd(x, y);
+      }
+   }
+
+   // y = A x, A the Kutta augmented normal integral
+   @Override
+   public void apply(double[] x, double[] y) {
+      multiply(this.normalBlocks, x, y);
+
+      // Kutta row
+      int last = this.numPanels - 1;
+      y[last] = x[0] + x[last];
+   }
+
+   // y = - tangential integral * x, as GeometricIntegralAssembler.multiplyTangential()
+   @Override
+   public void multiplyTangential(double[] x, double[] y) {
+      multiply(this.getTangentialBlocks(), x, y);
+      for (int i = 0; i < this.numPanels; i++) {
+         y[i] = -y[i];
+      }
+   }
+
+   private synchronized Block[] getTangentialBlocks() {
+      if (this.tangentialBlocks == null) {
+         this.tangentialBlocks = this.buildBlocks(1);
+      }
+      return this.tangentialBlocks;
+   }
+
+   // exact entry of the Kutta augmented normal integral
+   @Override
+   public double getEntry(int i, int j) {
+      if (i == this.numPanels - 1) {
+         return (j == 0 || j == i) ? 1 : 0;
+      }
+      double[] cell = new double[2];
+      this.assembler.calculateCell(i, j, cell);
+      return cell[0];
+   }
+
+   @Override
+   public int getSize() {
+      return numPanels;
+   }
+
+   /* * * * * * * * * * * * * * *
+    *  One block of the matrix, rows [rowStart, rowEnd)
+    * and columns [colStart, colEnd), either dense row
+    * major or u[l] (rows) times v[l] (columns) summed
+    * over l
+    * * * * * * * * * * * * * * */
+   private static class Block {
+
+      final int rowStart;
+      final int rowEnd;
+      final int colStart;
+      final int colEnd;
+      final boolean admissible;
+      double[] dense;
+      double[][] u;
+      double[][] v;
+
+      Block(int rowStart, int rowEnd, int colStart, int colEnd, boolean admissible) {
+         this.rowStart = rowStart;
+         this.rowEnd = rowEnd;
+         this.colStart = colStart;
+         this.colEnd = colEnd;
+         this.admissible = admissible;
+      }
+
+      void setLowRank(List<double[]> us, List<double[]> vs) {
+         this.u = us.toArray(new double[us.size()][]);
+         this.v = vs.toArray(new double[vs.size()][]);
+      }
+
+      // y(rows) += block * x(cols)
+      void multiplyAdd(double[] x, double[] y) {
+         if (this.dense != null) {
+            int numCols = this.colEnd - this.colStart;
+            for (int i = this.rowStart; i < this.rowEnd; i++) {
+               int rowBase = (i - this.rowStart) * numCols - this.colStart;
+               double rollingSum = 0;
+               for (int j = this.colStart; j < this.colEnd; j++) {
+                  rollingSum += this.dense[rowBase + j] * x[j];
+               }
+               y[i] += rollingSum;
+            }
+            return;
+         }
+
+         for (int l = 0; l < this.u.length; l++) {
+            double[] vl = this.v[l];
+            double t = 0;
+            for (int j = this.colStart; j < this.colEnd; j++) {
+               t += vl[j - this.colStart] * x[j];
+            }
+            double[] ul = this.u[l];
+            for (int i = this.rowStart; i < this.rowEnd; i++) {
+               y[i] += ul[i - this.rowStart] * t;
+            }
+         }
+      }
+
+      long storedValues() {
+         if (this.dense != null) {
+            return this.dense.length;
+         }
+         return (long) this.u.length * ((this.rowEnd - this.rowStart) + (this.colEnd - this.colStart));
+      }
+   }
+
+   private class BuildTask extends RecursiveAction {
+
+      private static final long serialVersionUID = 1L;
+      private final Block[] blocks;
+      private final int component;
+      private final int from;
+      private final int to;
+
+      BuildTask(Block[] blocks, int component, int from, int to) {
+         this.blocks = blocks;
+         this.component = component;
+         this.from = from;
+         this.to = to;
+      }
+
+      @Override
+      protected void compute() {
+         if (this.to - this.from <= BLOCKS_PER_TASK) {
+            fillBlocks(this.blocks, this.component, this.from, this.to);
+            return;
+         }
+         int mid = (this.from + this.to) >>> 1;
+         invokeAll(new BuildTask(this.blocks, this.component, this.from, mid),
+               new BuildTask(this.blocks, this.component, mid, this.to));
+      }
+   }
+
+   /* Getters */
+   public PanelSet getPanels() {
+      return panels;
+   }
+
+   public PanelClusterTree getTree() {
+      return tree;
+   }
+
+   public double getTolerance() {
+      return tolerance;
+   }
+
+   public double getEta() {
+      return eta;
+   }
+
+   // doubles held by the normal blocks, n^2 for a dense matrix
+   public long getStoredValues() {
+      long total = 0;
+      for (Block block : this.normalBlocks) {
+         total += block.storedValues();
+      }
+      return total;
+   }
+
+   public int getNumLowRankBlocks() {
+      int count = 0;
+      for (Block block : this.normalBlocks) {
+         if (block.u != null) {
+            count++;
+         }
+      }
+      return count;
+   }
+
+   public int getNumDenseBlocks() {
+      return this.normalBlocks.length - this.getNumLowRankBlocks();
+   }
+
+   public int getMaxRank() {
+      int max = 0;
+      for (Block block : this.normalBlocks) {
+         if (block.u != null) {
+            max = Math.max(max, block.u.length);
+         }
+      }
+      return max;
+   }
+
+}
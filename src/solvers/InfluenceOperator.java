@@ -0,0 +1,17 @@
+package solvers;
+
+/* * * * * * * * * * * * * * *
+ *  Matrix free form of a GeometricIntegral
+ *
+ * apply() is the Kutta augmented normal integral
+ * the influence system is solved with, and the
+ * tangential integral is available as a product for
+ * the surface velocity, neither is ever stored as
+ * an n x n matrix
+ * * * * * * * * * * * * * * */
+public interface InfluenceOperator extends EntryOperator {
+
+   // y = - tangential integral * x
+   void multiplyTangential(double[] x, double[] y);
+
+}
@@ -0,0 +1,238 @@
+package solvers;
+
+/* * * * * * * * * * * * * * *
+ *  Immutable LU factorization of a square
+ * matrix, PA = LU, built with partial pivoting.
+ *
+ * L is unit lower triangular and stored below
+ * the diagonal, U is stored on and above it.
+ * Factoring is O(n^3) but each solve against
+ * the factor is only O(n^2), so one factor can
+ * be reused for every right hand side
+ *
+ * rows are never physically swapped, logical
+ * row i of L and U is physical row pivot[i]
+ * of the flat DenseMatrix
+ * * * * * * * * * * * * * * */
+public class LUFactorization {
+
+   // right hand sides carried together through the batched solve
+   private static final int RHS_TILE = 4;
+
+   private final int size;
+   private final DenseMatrix lu;
+   // pivot[i] = row of the original matrix that ended up in row i
+   private final int[] pivot;
+
+   LUFactorization(int size, DenseMatrix lu, int[] pivot) {
+      this.size = size;
+      this.lu = lu;
+      this.pivot = pivot;
+   }
+
+   // a factor saved with getPackedLU() and getPivot(), luData is not copied
+   public static LUFactorization fromPacked(int size, double[] luData, int[] pivot) {
+      if (pivot.length != size) {
+         throw new IllegalArgumentException("LUFactorization: " + pivot.length + " pivots for size " + size);
+      }
+      return new LUFactorization(size, new DenseMatrix(size, size, luData), pivot.clone());
+   }
+
+   // factors a COPY of a, a is left untouched
+   public static LUFactorization factor(double[][] a, int size) {
+      return factorInPlace(DenseMatrix.fromArray(a, size, size));
+   }
+
+   public static LUFactorization factor(DenseMatrix a) {
+      return factorInPlace(a.copy());
+   }
+
+   // a is overwritten by the factor
+   public static LUFactorization factorInPlace(DenseMatrix a) {
+      int size = a.getNumRows();
+      int[] pivot = new int[size];
+      for (int i = 0; i < size; i++) {
+         pivot[i] = i;
+      }
+
+      eliminate(a, pivot, 0, size);
+
+      return new LUFactorization(size, a, pivot);
+   }
+
+   // right looking elimination of logical columns [colStart, colEnd)
+   // over logical rows colStart .. n, the full trailing matrix is updated
+   static void eliminate(DenseMatrix a, int[] pivot, int colStart, int colEnd) {
+      int size = a.getNumRows();
+      int numCols = a.getNumCols();
+      int ld = a.getLeadingDimension();
+      double[] data = a.getData();
+
+      for (int k = colStart; k < colEnd; k++) {
+
+         int maxRow = findPivotRow(a, pivot, k);
+         swapPivots(pivot, k, maxRow);
+
+         int pivotBase = pivot[k] * ld;
+         double pivotVal = data[pivotBase + k];
+         for (int i = k + 1; i < size; i++) {
+            int rowBase = pivot[i] * ld;
+            double ratio = data[rowBase + k] / pivotVal;
+            data[rowBase + k] = ratio;
+
+            for (int j = k + 1; j < numCols; j++) {
+               data[rowBase + j] = data[rowBase + j] - (data[pivotBase + j] * ratio);
+            }
+         }
+      }
+   }
+
+   //identify max row in logical column k, throws if it is all zero
+   static int findPivotRow(DenseMatrix a, int[] pivot, int k) {
+      int ld = a.getLeadingDimension();
+      double[] data = a.getData();
+
+      int maxRow = k;
+      for (int rowctr = k + 1; rowctr < a.getNumRows(); rowctr++) {
+         if (Math.abs(data[pivot[rowctr] * ld + k]) > Math.abs(data[pivot[maxRow] * ld + k])) {
+            maxRow = rowctr;
+         }
+      }
+
+      if (data[pivot[maxRow] * ld + k] == 0) {
+         throw new ArithmeticException("LUFactorization: matrix is singular at column " + k);
+      }
+      return maxRow;
+   }
+
+   static void swapPivots(int[] pivot, int row1, int row2) {
+      int tempVal = pivot[row1];
+      pivot[row1] = pivot[row2];
+      pivot[row2] = tempVal;
+   }
+
+   // solves A x = rhs, rhs is left untouched
+   public double[] solve(double[] rhs) {
+      double[] x = new double[this.size];
+      double[] data = this.lu.getData();
+      int ld = this.lu.getLeadingDimension();
+
+      // forward substitution, Ly = Pb
+      for (int i = 0; i < this.size; i++) {
+         int rowBase = this.pivot[i] * ld;
+         double val = rhs[this.pivot[i]];
+         for (int j = 0; j < i; j++) {
+            val = val - (data[rowBase + j] * x[j]);
+         }
+         x[i] = val;
+      }
+
+      // backwards substitution, Ux = y
+      for (int i = (this.size - 1); i >= 0; i--) {
+         int rowBase = this.pivot[i] * ld;
+         double val = x[i];
+         for (int j = i + 1; j < this.size; j++) {
+            val = val - (data[rowBase + j] * x[j]);
+         }
+         x[i] = val / data[rowBase + i];
+      }
+
+      return x;
+   }
+
+   // solves A X = B for all k columns of the n x k rhsBlock in one
+   // pass over the factor, rhsBlock[i][c] is row i of rhs c and is
+   // left untouched. the columns go RHS_TILE at a time, interleaved
+   // so row i of the tile is RHS_TILE adjacent doubles, and each
+   // row of L or U is read once per tile instead of once per
+   // column. every column sees exactly the arithmetic of
+   // solve(double[]), so the results are identical
+   public double[][] solve(double[][] rhsBlock) {
+      if (rhsBlock.length != this.size) {
+         throw new IllegalArgumentException("LUFactorization: rhs block has " + rhsBlock.length + " rows, expected " + this.size);
+      }
+      int numRhs = (this.size == 0) ? 0 : rhsBlock[0].length;
+      double[][] x = new double[this.size][numRhs];
+      double[] data = this.lu.getData();
+      int ld = this.lu.getLeadingDimension();
+
+      // element (i, c) of the current tile is work[i * RHS_TILE + c],
+      // a short last tile is padded with zero columns
+      double[] work = new double[this.size * RHS_TILE];
+
+      for (int cb = 0; cb < numRhs; cb += RHS_TILE) {
+         int nc = Math.min(RHS_TILE, numRhs - cb);
+
+         // forward substitution, LY = PB
+         for (int i = 0; i < this.size; i++) {
+            int rowBase = this.pivot[i] * ld;
+            double[] rhsRow = rhsBlock[this.pivot[i]];
+            double v0 = rhsRow[cb];
+            double v1 = (nc > 1) ? rhsRow[cb + 1] : 0;
+            double v2 = (nc > 2) ? rhsRow[cb + 2] : 0;
+            double v3 = (nc > 3) ? rhsRow[cb + 3] : 0;
+            for (int j = 0; j < i; j++) {
+               double l = data[rowBase + j];
+               int jBase = j * RHS_TILE;
+               v0 = v0 - (l * work[jBase]);
+               v1 = v1 - (l * work[jBase + 1]);
+               v2 = v2 - (l * work[jBase + 2]);
+               v3 = v3 - (l * work[jBase + 3]);
+            }
+            int wBase = i * RHS_TILE;
+            work[wBase] = v0;
+            work[wBase + 1] = v1;
+            work[wBase + 2] = v2;
+            work[wBase + 3] = v3;
+         }
+
+         // backwards substitution, UX = Y
+         for (int i = (this.size - 1); i >= 0; i--) {
+            int rowBase = this.pivot[i] * ld;
+            int wBase = i * RHS_TILE;
+            double v0 = work[wBase];
+            double v1 = work[wBase + 1];
+            double v2 = work[wBase + 2];
+            double v3 = work[wBase + 3];
+            for (int j = i + 1; j < this.size; j++) {
+               double u = data[rowBase + j];
+               int jBase = j * RHS_TILE;
+               v0 = v0 - (u * work[jBase]);
+               v1 = v1 - (u * work[jBase + 1]);
+               v2 = v2 - (u * work[jBase + 2]);
+               v3 = v3 - (u * work[jBase + 3]);
+            }
+            double diag = data[rowBase + i];
+            work[wBase] = v0 / diag;
+            work[wBase + 1] = v1 / diag;
+            work[wBase + 2] = v2 / diag;
+            work[wBase + 3] = v3 / diag;
+            System.arraycopy(work, wBase, x[i], cb, nc);
+         }
+      }
+
+      return x;
+   }
+
+   /* Getters */
+   public int getSize() {
+      return size;
+   }
+
+   public int[] getPivot() {
+      return pivot.clone();
+   }
+
+   // copy of the L and U factors, size x size row major in pivoted storage
+   // order, what fromPacked() takes back
+   public double[] getPackedLU() {
+      double[] packed = new double[size * size];
+      double[] data = lu.getData();
+      int ld = lu.getLeadingDimension();
+      for (int i = 0; i < size; i++) {
+         System.arraycopy(data, i * ld, packed, i * size, size);
+      }
+      return packed;
+   }
+
+}
@@ -0,0 +1,19 @@
+package solvers;
+
+/* * * * * * * * * * * * * * *
+ *  Square linear operator y = A x
+ *
+ * all the iterative solvers need from the system
+ * matrix is its action on a vector, so a dense
+ * matrix, a matrix free or a compressed influence
+ * operator can all be solved the same way
+ * * * * * * * * * * * * * * */
+public interface LinearOperator {
+
+   // number of rows (and columns)
+   int getSize();
+
+   // y = A x, y is overwritten, x is left untouched
+   void apply(double[] x, double[] y);
+
+}
@@ -12,7 +12,14 @@ public class MatrixSolver {
    private double[] m2;
    private int[] ordering;
    
-   private double[][] augmentedMatrix;
+   private DenseMatrix eliminatedMatrix;
+   private LUFactorization luFactorization;
+   private MixedPrecisionLU mixedPrecisionFactorization;
+   // fork join trailing update above ParallelLUKernel.DEFAULT_PARALLEL_THRESHOLD, serial blocked
+   // below it or when the common pool has a single thread
+   private BlockedLUKernel luKernel = new ParallelLUKernel();
+   // SIMD row updates and reductions when the JVM has the Vector API
+   private VectorOps vectorOps = VectorKernels.get();
    
    private int numRows;
    private int numCols;
@@ -25,8 +32,6 @@ public class MatrixSolver {
       B = b;
       this.numRows = numRows;
       this.numCols = numCols; 
-      this.augmentedMatrix = new double[numRows + 1][numCols]; 
-      this.populateAugmentedMatrix();
    }
 
    
@@ -38,17 +43,19 @@ public class MatrixSolver {
    // integral is calculated per point O(n^2) where as
    // LU Decomposition is performed in O(n^3) but it allows
    // solutions in O(N^2)
-   // Augmented matrix is regular A matrix, 
-   // but with n+1 columns, in the n+1th column 
-   // the B matrix resides, this allows all 
-   // elementary operations to be performed
-   // at once
+   // A is copied once into a flat DenseMatrix and eliminated
+   // in place, B is carried along in its own vector so no
+   // augmented copy is made. row swaps only touch the
+   // ordering vector, the rows themselves never move
 
 
    public void doGaussianEliminationPivot() {
       
-      this.makeAugmentedMatrix();
-      this.populateAugmentedMatrix();
+      this.eliminatedMatrix = DenseMatrix.fromArray(this.A, this.numRows, this.numCols);
+      double[] data = this.eliminatedMatrix.getData();
+      int ld = this.eliminatedMatrix.getLeadingDimension();
+      double[] b = new double[this.numRows];
+      System.arraycopy(this.B, 0, b, 0, this.numRows);
       
       this.ordering = new int[this.numRows];
       
@@ -65,25 +72,25 @@ public class MatrixSolver {
          //store off as maxRowNotH
          int maxRowNotH = h;
          for(int rowctr = h; rowctr < this.numRows; rowctr++) {            
-            if (Math.abs(this.augmentedMatrix[rowctr][k]) > Math.abs(this.augmentedMatrix[maxRowNotH][k]) ) {
+            if (Math.abs(data[this.ordering[rowctr] * ld + k]) > Math.abs(data[this.ordering[maxRowNotH] * ld + k]) ) {
                maxRowNotH = rowctr;
             }            
          }
          
-         if ( this.augmentedMatrix[maxRowNotH][k] == 0 ) {
+         if ( data[this.ordering[maxRowNotH] * ld + k] == 0 ) {
             k++;
          } else {
             // do swap
-            this.swapAugmentedRows(h, maxRowNotH);
             this.swapRows(h, maxRowNotH, this.ordering);
             
+            int pivotBase = this.ordering[h] * ld;
             for (int i = h + 1; i < this.numRows; i++) {
-               double ratio = this.augmentedMatrix[i][k] / this.augmentedMatrix[h][k];
-               this.augmentedMatrix[i][k] = 0;
+               int rowBase = this.ordering[i] * ld;
+               double ratio = data[rowBase + k] / data[pivotBase + k];
+               data[rowBase + k] = 0;
                
-               for (int j = k + 1; j < this.numCols + 1; j++) {
-                  this.augmentedMatrix[i][j] = this.augmentedMatrix[i][j] - (this.augmentedMatrix[h][j] * ratio);
-               }
+               this.vectorOps.subtractScaled(data, rowBase + k + 1, data, pivotBase + k + 1, ratio, this.numCols - k - 1);
+               b[this.ordering[i]] = b[this.ordering[i]] - (b[this.ordering[h]] * ratio);
                
             }
             h++;
@@ -91,17 +98,7 @@ public class MatrixSolver {
          } // end if          
       } // end while
       
-      this.doBackwardsSubstitutionPivot();
-      
-   }
-
-   private void swapAugmentedRows(int row1, int row2) {
-      
-      for (int i = 0; i < this.numCols + 1; i++) {
-         double tempVal = this.augmentedMatrix[row1][i];
-         this.augmentedMatrix[row1][i] = this.augmentedMatrix[row2][i];
-         this.augmentedMatrix[row2][i] = tempVal;
-      }
+      this.doBackwardsSubstitutionPivot(b);
       
    }
 
@@ -112,60 +109,27 @@ public class MatrixSolver {
    }
 
    
-   private void doBackwardsSubstitutionPivot() {
+   private void doBackwardsSubstitutionPivot(double[] b) {
       //https://algowiki-project.org/en/Backward_substitution#General_description_of_the_algorithm
+      double[] data = this.eliminatedMatrix.getData();
+      int ld = this.eliminatedMatrix.getLeadingDimension();
       this.X = new double[this.numRows];
       this.B = new double[this.numRows];
       
-      //populate B
+      //populate B, in pivoted order
       for (int i = 0; i < this.numRows; i++) {
-         B[i] = this.augmentedMatrix[i][this.numCols ];
+         B[i] = b[this.ordering[i]];
       }
       
       
       for (int i = (this.numRows - 1); i >= 0; i-- ) {
-         this.X[i] = B[i];
-         for (int j = i + 1; j < this.numCols; j++) {
-            this.X[i] = this.X[i] - ( this.augmentedMatrix[i][j] * this.X[j] );
-         }
-         this.X[i] =   this.X[i] /  this.augmentedMatrix[i][i];
+         int rowBase = this.ordering[i] * ld;
+         this.X[i] = B[i] - this.vectorOps.dot(data, rowBase + i + 1, this.X, i + 1, this.numCols - i - 1);
+         this.X[i] =   this.X[i] /  data[rowBase + i];
       }
       
-      this.reOrderDueToPivots();
-      
    }   
    
-   private void reOrderDueToPivots() {
-      
-      double[] newX = new double[this.numRows];
-      
-      for (int i = 0; i < this.numRows; i++) {
-         newX[ this.ordering[i] ] = this.X[this.ordering[i]];
-      }
-      this.X = newX;
-   }
-   
-   private void makeAugmentedMatrix() {
-      this.augmentedMatrix = new double[numRows][numCols + 1]; 
-   }
-   
-   private void populateAugmentedMatrix() {
-      for (int i = 0; i < this.numRows; i++) {   
-         
-         for (int j = 0; j < this.numCols + 1; j++) {
-         
-            if(j == this.numCols) {
-               this.augmentedMatrix[i][j] = this.B[i];
-            } else {
-               this.augmentedMatrix[i][j] = this.A[i][j];
-            }            
-         
-         } // end j      
-         
-      } // end i      
-   }
-
-   
    
    
    public void doGaussianEliminationNoPivot() {
@@ -212,37 +176,47 @@ public class MatrixSolver {
    
 
    //LU Decomposition 
-   public void doLUDecomposition() {
-      for(int i = 0; i < this.numRows; i++) {
-      
-         for(int j = 0; j < i; j++) {
-            
-            for(int k = 0; k < j; k++) {
-               
-            }
-            
-         }
-         
-         for(int j = i; j < this.numCols; j++) {
+   // factors A once (O(n^3)) into an immutable factor,
+   // every solve against it after that is O(n^2). A is not modified
+   public LUFactorization doLUDecomposition() {
+      this.luFactorization = this.luKernel.factor(this.A, this.numRows);
+      return this.luFactorization;
+   }
 
-         }
-         
+   // solves against the last factor using the current B
+   public void doLUSolve() {
+      if (this.luFactorization == null) {
+         this.doLUDecomposition();
       }
-      
-      
+      this.X = this.luFactorization.solve(this.B);
+   }
+
+   // Mixed precision LU
+   // float factor of A plus double iterative refinement, A is referenced
+   // not copied so it must not change while the factor is in use
+   public MixedPrecisionLU doMixedPrecisionDecomposition() {
+      this.mixedPrecisionFactorization = new MixedPrecisionLU(this.A, this.numRows);
+      return this.mixedPrecisionFactorization;
+   }
+
+   // solves against the last mixed precision factor using the current B,
+   // see getMixedPrecisionFactorization().getLastRefinementSteps()
+   public void doMixedPrecisionSolve() {
+      if (this.mixedPrecisionFactorization == null) {
+         this.doMixedPrecisionDecomposition();
+      }
+      this.X = this.mixedPrecisionFactorization.solve(this.B);
+   }
+
+   // solves A X = B for every column of the n x k rhsBlock at once,
+   // factoring A first if needed. B and X are not touched
+   public double[][] solve(double[][] rhsBlock) {
+      if (this.luFactorization == null) {
+         this.doLUDecomposition();
+      }
+      return this.luFactorization.solve(rhsBlock);
    }
 
-   
-   
-   
-   
-   
-   
-   
-   
-   
-   
-   
    
    
    
@@ -250,9 +224,7 @@ public class MatrixSolver {
    public double[] doMatrixMultiply(int size) {
       double[] res = new double[size];
       
-      for (int i = 0; i < size; i++) {
-         res[i] = this.m1[i] * this.m2[i];
-      }
+      this.vectorOps.multiply(this.m1, this.m2, res, size);
       
       return res;
    }
@@ -260,9 +232,7 @@ public class MatrixSolver {
    public double[] doMatrixMultiply(int size, double[] mat1, double[] mat2) {
       double[] res = new double[size];
       
-      for (int i = 0; i < size; i++) {
-         res[i] = mat1[i] * mat2[i];
-      }
+      this.vectorOps.multiply(mat1, mat2, res, size);
       
       return res;
    }
@@ -288,19 +258,13 @@ public class MatrixSolver {
    }
    
    public double doSum(int size, double[] mat) {
-      double res = 0;
-      for(int i = 0; i < size; i++) {
-         res += mat[i];
-      }
-      return res;
+      return this.vectorOps.sum(mat, 0, size);
    }
 
    public double[] doMatrixMultiplyByConst(int size, double[] mat1, double theVal) {
       double[] res = new double[size];
 
-      for (int i = 0; i < size; i++) {
-         res[i] = mat1[i] * theVal;
-      }
+      this.vectorOps.multiplyByConst(mat1, theVal, res, size);
 
       return res;
    }
@@ -308,9 +272,7 @@ public class MatrixSolver {
    public double[] doMatrixAdditionByConst(int size, double[] mat1, double theVal) {
       double[] res = new double[size];
 
-      for (int i = 0; i < size; i++) {
-         res[i] = mat1[i] + theVal;
-      }
+      this.vectorOps.addConst(mat1, theVal, res, size);
 
       return res;
    }
@@ -319,12 +281,32 @@ public class MatrixSolver {
    
    /*Getters and setters*/
    
+   public VectorOps getVectorOps() {
+      return vectorOps;
+   }
+
+   // VectorKernels.scalar() to compare against the SIMD kernels
+   public void setVectorOps(VectorOps vectorOps) {
+      this.vectorOps = vectorOps;
+   }
+
+   public BlockedLUKernel getLUKernel() {
+      return luKernel;
+   }
+
+   // block size / tile tuning for doLUDecomposition, or a ParallelLUKernel on a given pool
+   public void setLUKernel(BlockedLUKernel luKernel) {
+      this.luKernel = luKernel;
+   }
+
    public double[][] getA() {
       return A;
    }
 
    public void setA(double[][] a) {
       A = a;
+      this.luFactorization = null;
+      this.mixedPrecisionFactorization = null;
    }
 
    public double[] getB() {
@@ -355,8 +337,17 @@ public class MatrixSolver {
       return X;
    }
 
-   public double[][] getAugmentedMatrix() {
-      return augmentedMatrix;
+   public LUFactorization getLUFactorization() {
+      return luFactorization;
+   }
+
+   public MixedPrecisionLU getMixedPrecisionFactorization() {
+      return mixedPrecisionFactorization;
+   }
+
+   // upper triangle left by doGaussianEliminationPivot, logical row i is physical row ordering[i]
+   public DenseMatrix getEliminatedMatrix() {
+      return eliminatedMatrix;
    }
 
    public double[] getM1() {
@@ -0,0 +1,215 @@
+package solvers;
+
+/* * * * * * * * * * * * * * *
+ *  Mixed precision LU with iterative refinement
+ *
+ * the O(n^3) factor is done in float, half the
+ * memory of a double factor and twice the values per
+ * cache line / vector register. each solve starts
+ * from the float solution and then refines it with
+ *
+ *    r  = b - A x      (double, against the original A)
+ *    dx = LU^-1 r      (float factor)
+ *    x  = x + dx
+ *
+ * until the residual is down at double round off,
+ *    ||r|| <= ||A|| ||x|| eps sqrt(n)
+ * the same test LAPACK's dsgesv uses. for a well
+ * conditioned matrix that is 2 or 3 steps
+ *
+ * A is held by reference, not copied, and must not
+ * change while the factor is in use. if refinement
+ * fails to converge, or the float factor is singular,
+ * A is factored in double once and every solve after
+ * that goes straight to the double factor
+ * * * * * * * * * * * * * * */
+public class MixedPrecisionLU {
+
+   public static final int DEFAULT_MAX_REFINEMENT_STEPS = 30;
+   private static final double DOUBLE_EPS = Math.ulp(1.0);
+
+   private final int size;
+   private final double[][] a;
+   private final double aNorm;         // infinity norm of A
+   private final int maxRefinementSteps;
+
+   // float factor, same layout as LUFactorization
+   private final float[] lu;
+   private final int[] pivot;
+
+   // double factor once refinement has failed
+   private LUFactorization fallback;
+
+   // results of the last solve
+   private int lastRefinementSteps;
+
+   public MixedPrecisionLU(double[][] a, int size) {
+      this(a, size, DEFAULT_MAX_REFINEMENT_STEPS);
+   }
+
+   public MixedPrecisionLU(double[][] a, int size, int maxRefinementSteps) {
+      this.size = size;
+      this.a = a;
+      this.maxRefinementSteps = maxRefinementSteps;
+
+      double maxRowSum = 0;
+      this.lu = new float[size * size];
+      this.pivot = new int[size];
+      for (int i = 0; i < size; i++) {
+         this.pivot[i] = i;
+         double rowSum = 0;
+         for (int j = 0; j < size; j++) {
+            this.lu[i * size + j] = (float) a[i][j];
+            rowSum += Math.abs(a[i][j]);
+         }
+         maxRowSum = Math.max(maxRowSum, rowSum);
+      }
+      this.aNorm = maxRowSum;
+
+      if (!this.eliminateFloat()) {
+         this.fallback = LUFactorization.factor(a, size);
+      }
+   }
+
+   // right looking elimination in float, false if a pivot column is all zero
+   private boolean eliminateFloat() {
+      int n = this.size;
+      float[] data = this.lu;
+
+      for (int k = 0; k < n; k++) {
+
+         int maxRow = k;
+         for (int rowctr = k + 1; rowctr < n; rowctr++) {
+            if (Math.abs(data[this.pivot[rowctr] * n + k]) > Math.abs(data[this.pivot[maxRow] * n + k])) {
+               maxRow = rowctr;
+            }
+         }
+         if (data[this.pivot[maxRow] * n + k] == 0) {
+            return false;
+         }
+         LUFactorization.swapPivots(this.pivot, k, maxRow);
+
+         int pivotBase = this.pivot[k] * n;
+         float pivotVal = data[pivotBase + k];
+         for (int i = k + 1; i < n; i++) {
+            int rowBase = this.pivot[i] * n;
+            float ratio = data[rowBase + k] / pivotVal;
+            data[rowBase + k] = ratio;
+
+            for (int j = k + 1; j < n; j++) {
+               data[rowBase + j] = data[rowBase + j] - (data[pivotBase + j] * ratio);
+            }
+         }
+      }
+      return true;
+   }
+
+   // solves A x = rhs to double accuracy, rhs is left untouched
+   public double[] solve(double[] rhs) {
+      if (this.fallback != null) {
+         this.lastRefinementSteps = 0;
+         return this.fallback.solve(rhs);
+      }
+
+      double[] x = new double[this.size];
+      double[] r = rhs.clone();
+      double tolerance = DOUBLE_EPS * Math.sqrt(this.size) * this.aNorm;
+
+      // step 0 is the plain float solve, from x = 0 the residual is just rhs
+      for (int step = 0; step <= this.maxRefinementSteps; step++) {
+
+         double rNorm = normInf(r);
+         if (rNorm <= tolerance * normInf(x)) {
+            this.lastRefinementSteps = Math.max(step - 1, 0);
+            return x;
+         }
+
+         // scaled so a small residual does not lose its bits to float underflow
+         double[] dx = this.solveFloat(r, rNorm);
+         for (int i = 0; i < this.size; i++) {
+            x[i] = x[i] + dx[i];
+         }
+         this.residual(rhs, x, r);
+      }
+
+      // refinement stalled, A is too ill conditioned for a float factor
+      this.fallback = LUFactorization.factor(this.a, this.size);
+      this.lastRefinementSteps = this.maxRefinementSteps;
+      return this.fallback.solve(rhs);
+   }
+
+   // x = rNorm * (LU)^-1 (r / rNorm) with the float factor
+   private double[] solveFloat(double[] r, double rNorm) {
+      int n = this.size;
+      float[] data = this.lu;
+      float[] y = new float[n];
+      double scale = (rNorm == 0) ? 1 : rNorm;
+
+      // forward substitution, Ly = Pb
+      for (int i = 0; i < n; i++) {
+         int rowBase = this.pivot[i] * n;
+         float val = (float) (r[this.pivot[i]] / scale);
+         for (int j = 0; j < i; j++) {
+            val = val - (data[rowBase + j] * y[j]);
+         }
+         y[i] = val;
+      }
+
+      // backwards substitution, Ux = y
+      for (int i = (n - 1); i >= 0; i--) {
+         int rowBase = this.pivot[i] * n;
+         float val = y[i];
+         for (int j = i + 1; j < n; j++) {
+            val = val - (data[rowBase + j] * y[j]);
+         }
+         y[i] = val / data[rowBase + i];
+      }
+
+      double[] x = new double[n];
+      for (int i = 0; i < n; i++) {
+         x[i] = y[i] * scale;
+      }
+      return x;
+   }
+
+   // r = b - A x in double
+   private void residual(double[] b, double[] x, double[] r) {
+      for (int i = 0; i < this.size; i++) {
+         double[] row = this.a[i];
+         double rollingSum = 0;
+         for (int j = 0; j < this.size; j++) {
+            rollingSum += row[j] * x[j];
+         }
+         r[i] = b[i] - rollingSum;
+      }
+   }
+
+   private static double normInf(double[] v) {
+      double max = 0;
+      for (int i = 0; i < v.length; i++) {
+         max = Math.max(max, Math.abs(v[i]));
+      }
+      return max;
+   }
+
+   /* Getters */
+   public int getSize() {
+      return size;
+   }
+
+   public int getMaxRefinementSteps() {
+      return maxRefinementSteps;
+   }
+
+   // refinement steps after the first float solve in the last solve,
+   // maxRefinementSteps if it gave up and fell back
+   public int getLastRefinementSteps() {
+      return lastRefinementSteps;
+   }
+
+   // true once solves go to the full double factor
+   public boolean isUsingFallback() {
+      return fallback != null;
+   }
+
+}
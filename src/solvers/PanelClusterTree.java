@@ -0,0 +1,146 @@
+package solvers;
+
+import geometryContainers.PanelSet;
+
+/* * * * * * * * * * * * * * *
+ *  Binary cluster tree over the panels of an
+ * airfoil
+ *
+ * the panels run in order round a closed curve, so
+ * a contiguous index range is a contiguous stretch
+ * of surface and already a compact cluster. each
+ * node is split in half by index until it holds at
+ * most leafSize panels, and holds the center of the
+ * bounding box of its panel end points and the radius
+ * of the disk round that center holding all of them
+ *
+ * node 0 is the root, nodes are numbered breadth
+ * first so children come after their parents, the
+ * children of node k are left[k] and left[k] + 1,
+ * left[k] is -1 for a leaf
+ * * * * * * * * * * * * * * */
+public class PanelClusterTree {
+
+   private final int numPanels;
+   private final int leafSize;
+
+   private int numNodes;
+   private final int[] nodeStart;
+   private final int[] nodeEnd;
+   private final int[] left;
+   private final double[] centerX;
+   private final double[] centerY;
+   private final double[] radius;
+
+   public PanelClusterTree(PanelSet panels, int leafSize) {
+      if (leafSize < 1) {
+         throw new IllegalArgumentException("PanelClusterTree: leaf size must be >= 1");
+      }
+      this.numPanels = panels.getNumberOfPanels();
+      this.leafSize = leafSize;
+
+      // a binary tree over n panels with leaves of leafSize has under 4 n / leafSize nodes
+      int maxNodes = 4 * (this.numPanels / leafSize + 1);
+      int[] start = new int[maxNodes];
+      int[] end = new int[maxNodes];
+      int[] child = new int[maxNodes];
+      double[] cx = new double[maxNodes];
+      double[] cy = new double[maxNodes];
+      double[] r = new double[maxNodes];
+
+      double[] X = panels.getX();
+      double[] Y = panels.getY();
+
+      this.numNodes = 1;
+      start[0] = 0;
+      end[0] = this.numPanels;
+      for (int node = 0; node < this.numNodes; node++) {
+         double xMin = X[start[node]];
+         double xMax = X[start[node]];
+         double yMin = Y[start[node]];
+         double yMax = Y[start[node]];
+         for (int p = start[node]; p <= end[node]; p++) {
+            xMin = Math.min(xMin, X[p]);
+            xMax = Math.max(xMax, X[p]);
+            yMin = Math.min(yMin, Y[p]);
+            yMax = Math.max(yMax, Y[p]);
+         }
+         cx[node] = 0.5 * (xMin + xMax);
+         cy[node] = 0.5 * (yMin + yMax);
+         double rMax = 0;
+         for (int p = start[node]; p <= end[node]; p++) {
+            rMax = Math.max(rMax, Math.hypot(X[p] - cx[node], Y[p] - cy[node]));
+         }
+         r[node] = rMax;
+
+         if (end[node] - start[node] <= leafSize) {
+            child[node] = -1;
+         } else {
+            int mid = (start[node] + end[node]) >>> 1;
+            child[node] = this.numNodes;
+            start[this.numNodes] = start[node];
+            end[this.numNodes] = mid;
+            start[this.numNodes + 1] = mid;
+            end[this.numNodes + 1] = end[node];
+            this.numNodes += 2;
+         }
+      }
+
+      this.nodeStart = start;
+      this.nodeEnd = end;
+      this.left = child;
+      this.centerX = cx;
+      this.centerY = cy;
+      this.radius = r;
+   }
+
+   public boolean isLeaf(int node) {
+      return left[node] < 0;
+   }
+
+   // gap between the disks of two nodes, 0 if they overlap
+   public double distance(int node1, int node2) {
+      double d = Math.hypot(centerX[node1] - centerX[node2], centerY[node1] - centerY[node2]);
+      return Math.max(0, d - radius[node1] - radius[node2]);
+   }
+
+   /* Getters */
+   public int getNumPanels() {
+      return numPanels;
+   }
+
+   public int getLeafSize() {
+      return leafSize;
+   }
+
+   public int getNumNodes() {
+      return numNodes;
+   }
+
+   // first panel of each node, the arrays below are shared, not copied
+   public int[] getNodeStart() {
+      return nodeStart;
+   }
+
+   // one past the last panel of each node
+   public int[] getNodeEnd() {
+      return nodeEnd;
+   }
+
+   public int[] getLeft() {
+      return left;
+   }
+
+   public double[] getCenterX() {
+      return centerX;
+   }
+
+   public double[] getCenterY() {
+      return centerY;
+   }
+
+   public double[] getRadius() {
+      return radius;
+   }
+
+}
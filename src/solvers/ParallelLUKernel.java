@@ -0,0 +1,120 @@
+package solvers;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/* * * * * * * * * * * * * * *
+ *  Blocked LU with the trailing matrix update
+ * spread over a fork join pool
+ *
+ * after each panel, A22 -= L21 * U12 touches every
+ * remaining element once and no two elements depend
+ * on each other, so the update rectangle is split in
+ * half (rows or columns, whichever is longer) until
+ * the pieces are small, each piece being the serial
+ * tiled update. the panel factor stays serial since
+ * it holds the pivot search.
+ *
+ * element update order is unchanged so the factor is
+ * identical to the serial kernels for any number of
+ * threads. below parallelThreshold, or on a pool of
+ * one thread, it is just the serial blocked kernel
+ * * * * * * * * * * * * * * */
+public class ParallelLUKernel extends BlockedLUKernel {
+
+   public static final int DEFAULT_PARALLEL_THRESHOLD = 768;
+   // below this many elements a piece of the update is done directly
+   private static final int MIN_TASK_ELEMENTS = 64 * 256;
+
+   private final ForkJoinPool pool;
+   private final int parallelThreshold;
+
+   public ParallelLUKernel() {
+      this(ForkJoinPool.commonPool());
+   }
+
+   public ParallelLUKernel(ForkJoinPool pool) {
+      this(pool, DEFAULT_BLOCK_SIZE, DEFAULT_COLUMN_TILE, DEFAULT_PARALLEL_THRESHOLD);
+   }
+
+   public ParallelLUKernel(ForkJoinPool pool, int blockSize, int columnTile, int parallelThreshold) {
+      super(blockSize, columnTile, DEFAULT_MIN_BLOCKED_SIZE);
+      this.pool = pool;
+      this.parallelThreshold = parallelThreshold;
+   }
+
+   @Override
+   void updateTrailing(DenseMatrix a, int[] pivot, int kb, int ke,
+         int rowStart, int rowEnd, int colStart, int colEnd) {
+
+      // a single worker only adds task overhead to the serial update
+      if (a.getNumRows() < this.parallelThreshold || this.pool.getParallelism() <= 1) {
+         super.updateTrailing(a, pivot, kb, ke, rowStart, rowEnd, colStart, colEnd);
+         return;
+      }
+
+      this.pool.invoke(new TrailingUpdateTask(a, pivot, kb, ke, rowStart, rowEnd, colStart, colEnd));
+   }
+
+   private void updateTrailingSerial(DenseMatrix a, int[] pivot, int kb, int ke,
+         int rowStart, int rowEnd, int colStart, int colEnd) {
+      super.updateTrailing(a, pivot, kb, ke, rowStart, rowEnd, colStart, colEnd);
+   }
+
+   private class TrailingUpdateTask extends RecursiveAction {
+
+      private static final long serialVersionUID = 1L;
+      private final DenseMatrix a;
+      private final int[] pivot;
+      private final int kb;
+      private final int ke;
+      private final int rowStart;
+      private final int rowEnd;
+      private final int colStart;
+      private final int colEnd;
+
+      TrailingUpdateTask(DenseMatrix a, int[] pivot, int kb, int ke,
+            int rowStart, int rowEnd, int colStart, int colEnd) {
+         this.a = a;
+         this.pivot = pivot;
+         this.kb = kb;
+         this.ke = ke;
+         this.rowStart = rowStart;
+         this.rowEnd = rowEnd;
+         this.colStart = colStart;
+         this.colEnd = colEnd;
+      }
+
+      @Override
+      protected void compute() {
+         int numRows = this.rowEnd - this.rowStart;
+         int numCols = this.colEnd - this.colStart;
+
+         if ((long) numRows * numCols <= MIN_TASK_ELEMENTS || (numRows < 2 && numCols < 2)) {
+            updateTrailingSerial(this.a, this.pivot, this.kb, this.ke,
+                  this.rowStart, this.rowEnd, this.colStart, this.colEnd);
+            return;
+         }
+
+         if (numRows >= numCols) {
+            int mid = (this.rowStart + this.rowEnd) >>> 1;
+            invokeAll(new TrailingUpdateTask(this.a, this.pivot, this.kb, this.ke, this.rowStart, mid, this.colStart, this.colEnd),
+                  new TrailingUpdateTask(this.a, this.pivot, this.kb, this.ke, mid, this.rowEnd, this.colStart, this.colEnd));
+         } else {
+            int mid = (this.colStart + this.colEnd) >>> 1;
+            invokeAll(new TrailingUpdateTask(this.a, this.pivot, this.kb, this.ke, this.rowStart, this.rowEnd, this.colStart, mid),
+                  new TrailingUpdateTask(this.a, this.pivot, this.kb, this.ke, this.rowStart, this.rowEnd, mid, this.colEnd));
+         }
+      }
+   }
+
+   /* Getters */
+   public ForkJoinPool getPool() {
+      return pool;
+   }
+
+   public int getParallelThreshold() {
+      return parallelThreshold;
+   }
+
+}
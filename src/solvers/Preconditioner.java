@@ -0,0 +1,13 @@
+package solvers;
+
+/* * * * * * * * * * * * * * *
+ *  Approximate inverse M^-1 of a system matrix,
+ * cheap to apply, used to cluster the spectrum
+ * an iterative solver sees
+ * * * * * * * * * * * * * * */
+public interface Preconditioner {
+
+   // z = M^-1 r, z is overwritten, r is left untouched
+   void apply(double[] r, double[] z);
+
+}
@@ -0,0 +1,99 @@
+package solvers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import geometryContainers.AirfoilGeometry;
+import geometryContainers.PropellerGeometry;
+
+/* * * * * * * * * * * * * * *
+ *  Evaluates section Cl and Cd for every radial
+ * station of a propeller in parallel
+ *
+ * stations are independent, each one is a task on
+ * the executor. every worker thread keeps its own
+ * VortexPanelSolver and each station is solved at
+ * its own alpha, the (often shared) AirfoilGeometry
+ * objects are only read, never modified
+ * * * * * * * * * * * * * * */
+public class RadialStationEvaluator {
+
+   private final ExecutorService executor;
+   private final ThreadLocal<VortexPanelSolver> threadSolvers;
+   private volatile boolean coefficientsOnly;
+
+   public RadialStationEvaluator(ExecutorService executor) {
+      this.executor = executor;
+      this.threadSolvers = new ThreadLocal<VortexPanelSolver>() {
+         @Override
+         protected VortexPanelSolver initialValue() {
+            VortexPanelSolver vpm = new VortexPanelSolver();
+            vpm.setSuperpositionMode(true);
+            vpm.setVinfinity(1); // this is speed coming in, set to 1 for coeff
+            return vpm;
+         }
+      };
+   }
+
+   // fills Cl and Cd (scaled by chord) for stations 0 .. numStations - 1
+   public void evaluate(final PropellerGeometry propeller, final double[] alphaRad, int numStations,
+         final double[] Cl, final double[] Cd) throws Exception {
+
+      List<Future<?>> pending = new ArrayList<Future<?>>(numStations);
+
+      for (int i = 0; i < numStations; i++) {
+         final int station = i;
+         pending.add(this.executor.submit(new Runnable() {
+            @Override
+            public void run() {
+               evaluateStation(propeller, station, alphaRad[station], Cl, Cd);
+            }
+         }));
+      }
+
+      try {
+         for (Future<?> task : pending) {
+            task.get();
+         }
+      } catch (ExecutionException e) {
+         for (Future<?> task : pending) {
+            task.cancel(true);
+         }
+         if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+         }
+         throw e;
+      }
+   }
+
+   private void evaluateStation(PropellerGeometry propeller, int station, double alphaRad,
+         double[] Cl, double[] Cd) {
+
+      AirfoilGeometry thisAirfoil = propeller.getAirfoilAtRadialIndex(station);
+      VortexPanelSolver vpm = this.threadSolvers.get();
+      vpm.setAirfoil(thisAirfoil);
+      vpm.setCoefficientsOnly(this.coefficientsOnly);
+      vpm.runVPMSolver(alphaRad);
+
+      // each station writes only its own slot
+      Cl[station] = vpm.getCl() * propeller.getChordsAtIndex(station);
+      Cd[station] = vpm.getCd() * propeller.getChordsAtIndex(station);
+   }
+
+   public ExecutorService getExecutor() {
+      return executor;
+   }
+
+   public boolean isCoefficientsOnly() {
+      return coefficientsOnly;
+   }
+
+   // see VortexPanelSolver.setCoefficientsOnly
+   public void setCoefficientsOnly(boolean coefficientsOnly) {
+      this.coefficientsOnly = coefficientsOnly;
+   }
+
+}
@@ -0,0 +1,294 @@
+package solvers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import geometryContainers.AirfoilGeometry;
+import geometryContainers.GeometryKey;
+
+/* * * * * * * * * * * * * * *
+ *  Grid converged Cl, Cd and Cm by Richardson
+ * extrapolation over the panel count
+ *
+ * the airfoil is solved at 2 or 3 point counts
+ * n, r n, r^2 n of its own NACA 4 series, each level
+ * a task on the executor. with a panel size h ~ 1/m
+ * (m panels) a coefficient behaves as
+ *    f(h) = f* + C h^p
+ * so from the finest two levels
+ *    f* = f2 + (f2 - f1) / (r^p - 1)
+ * with 3 levels the order p is solved for from the
+ * ratio of the two differences, with 2 levels, or
+ * when the differences change sign, assumedOrder is
+ * used. |f* - finest| is the error estimate
+ *
+ * point counts are kept even so every level has an
+ * odd number of panels, the odd / even mode of the
+ * constant strength panels sits on the other parity.
+ * level results are memoized per geometry and alpha
+ * so coarse levels shared between runs, or with a
+ * refinement ratio change, are solved once
+ * * * * * * * * * * * * * * */
+public class RichardsonExtrapolation {
+
+   public static final int DEFAULT_NUM_LEVELS = 3;
+   public static final double DEFAULT_RATIO = 2;
+   public static final double DEFAULT_ASSUMED_ORDER = 2;
+   private static final double MIN_ORDER = 0.5;
+   private static final double MAX_ORDER = 4;
+
+   private final ExecutorService executor;
+   private final int[] nacaDigits;
+   private final double cordLength;
+   private final int basePoints;
+
+   private int numLevels = DEFAULT_NUM_LEVELS;
+   private double ratio = DEFAULT_RATIO;
+   private double assumedOrder = DEFAULT_ASSUMED_ORDER;
+   private volatile VortexPanelSolver.LINEARSOLVER linearSolver = VortexPanelSolver.LINEARSOLVER.DIRECT;
+
+   // {Cl, Cd, Cm} per level geometry and alpha
+   private final ConcurrentHashMap<GeometryKey, ConcurrentHashMap<Double, double[]>> levelResults;
+
+   // results of the last run, index 0 Cl, 1 Cd, 2 Cm
+   private int[] levelPoints;
+   private double[][] levelCoefficients;   // level x coefficient
+   private double[] extrapolated;
+   private double[] orders;
+   private double[] errorEstimates;
+
+   public RichardsonExtrapolation(AirfoilGeometry af) {
+      this(af, ForkJoinPool.commonPool());
+   }
+
+   public RichardsonExtrapolation(AirfoilGeometry af, ExecutorService executor) {
+      this.nacaDigits = af.getNACADigits();
+      if (this.nacaDigits == null) {
+         throw new IllegalArgumentException("RichardsonExtrapolation: airfoil is not a NACA 4 series");
+      }
+      this.executor = executor;
+      this.cordLength = af.getCordLength();
+      this.basePoints = af.getNumberOfPoints();
+      this.levelResults = new ConcurrentHashMap<GeometryKey, ConcurrentHashMap<Double, double[]>>();
+   }
+
+   public void run(final double alphaRad) throws Exception {
+
+      this.levelPoints = new int[this.numLevels];
+      for (int k = 0; k < this.numLevels; k++) {
+         int points = (int) Math.round(this.basePoints * Math.pow(this.ratio, k));
+         points += points % 2;
+         if (k > 0 && points <= this.levelPoints[k - 1]) {
+            points = this.levelPoints[k - 1] + 2;
+         }
+         this.levelPoints[k] = points;
+      }
+
+      // finest first, it is the longest and the coarse ones fill in around it
+      this.levelCoefficients = new double[this.numLevels][];
+      List<Future<double[]>> pending = new ArrayList<Future<double[]>>(this.numLevels);
+      for (int k = this.numLevels - 1; k >= 0; k--) {
+         final int points = this.levelPoints[k];
+         pending.add(this.executor.submit(new Callable<double[]>() {
+            @Override
+            public double[] call() {
+               return solveLevel(points, alphaRad);
+            }
+         }));
+      }
+
+      try {
+         for (int k = this.numLevels - 1; k >= 0; k--) {
+            this.levelCoefficients[k] = pending.get(this.numLevels - 1 - k).get();
+         }
+      } catch (ExecutionException e) {
+         for (Future<double[]> task : pending) {
+            task.cancel(true);
+         }
+         if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+         }
+         throw e;
+      }
+
+      this.extrapolated = new double[3];
+      this.orders = new double[3];
+      this.errorEstimates = new double[3];
+      for (int c = 0; c < 3; c++) {
+         this.extrapolate(c);
+      }
+   }
+
+   private double[] solveLevel(int points, double alphaRad) {
+      AirfoilGeometry af = new AirfoilGeometry(this.cordLength, points);
+      af.becomeNACA4Series(this.nacaDigits[0], this.nacaDigits[1], this.nacaDigits[2], this.nacaDigits[3]);
+      GeometryKey key = af.getGeometryKey();
+
+      ConcurrentHashMap<Double, double[]> byAlpha = this.levelResults.get(key);
+      if (byAlpha == null) {
+         ConcurrentHashMap<Double, double[]> fresh = new ConcurrentHashMap<Double, double[]>();
+         byAlpha = this.levelResults.putIfAbsent(key, fresh);
+         if (byAlpha == null) {
+            byAlpha = fresh;
+         }
+      }
+      double[] known = byAlpha.get(alphaRad);
+      if (known != null) {
+         return known;
+      }
+
+      VortexPanelSolver vpm = new VortexPanelSolver(af);
+      vpm.setVinfinity(1);
+      vpm.setLinearSolver(this.linearSolver);
+      vpm.runVPMSolver(alphaRad);
+      double[] coefficients = new double[] {vpm.getCl(), vpm.getCd(), vpm.getCm()};
+      byAlpha.put(alphaRad, coefficients);
+      return coefficients;
+   }
+
+   private void extrapolate(int c) {
+      int finest = this.numLevels - 1;
+      double f2 = this.levelCoefficients[finest][c];
+      double f1 = this.levelCoefficients[finest - 1][c];
+      // panel size ratio between the finest two levels
+      double r2 = (this.levelPoints[finest] - 1.0) / (this.levelPoints[finest - 1] - 1.0);
+
+      double p = this.assumedOrder;
+      if (this.numLevels > 2) {
+         double f0 = this.levelCoefficients[finest - 2][c];
+         double r1 = (this.levelPoints[finest - 1] - 1.0) / (this.levelPoints[finest - 2] - 1.0);
+         double d1 = f1 - f0;
+         double d2 = f2 - f1;
+         if (d1 * d2 > 0) {
+            p = this.observedOrder(d1 / d2, r1, r2);
+         }
+      }
+
+      this.orders[c] = p;
+      this.extrapolated[c] = f2 + (f2 - f1) / (Math.pow(r2, p) - 1);
+      this.errorEstimates[c] = Math.abs(this.extrapolated[c] - f2);
+   }
+
+   // p with (r1^p - 1) / (1 - r2^-p) = d1 / d2, which is r^p for equal ratios.
+   // the left side grows with p, so bisection within [MIN_ORDER, MAX_ORDER]
+   private double observedOrder(double differenceRatio, double r1, double r2) {
+      double low = MIN_ORDER;
+      double high = MAX_ORDER;
+      for (int it = 0; it < 60; it++) {
+         double mid = 0.5 * (low + high);
+         double model = (Math.pow(r1, mid) - 1) / (1 - Math.pow(r2, -mid));
+         if (model < differenceRatio) {
+            low = mid;
+         } else {
+            high = mid;
+         }
+      }
+      return 0.5 * (low + high);
+   }
+
+   public void clear() {
+      this.levelResults.clear();
+   }
+
+   /* Getters and Setters */
+   public double getCl() {
+      return extrapolated[0];
+   }
+
+   public double getCd() {
+      return extrapolated[1];
+   }
+
+   public double getCm() {
+      return extrapolated[2];
+   }
+
+   public double getClOrder() {
+      return orders[0];
+   }
+
+   public double getCdOrder() {
+      return orders[1];
+   }
+
+   public double getCmOrder() {
+      return orders[2];
+   }
+
+   public double getClErrorEstimate() {
+      return errorEstimates[0];
+   }
+
+   public double getCdErrorEstimate() {
+      return errorEstimates[1];
+   }
+
+   public double getCmErrorEstimate() {
+      return errorEstimates[2];
+   }
+
+   public int[] getLevelPoints() {
+      return levelPoints;
+   }
+
+   // level x {Cl, Cd, Cm}
+   public double[][] getLevelCoefficients() {
+      return levelCoefficients;
+   }
+
+   public int getNumCached() {
+      int numCached = 0;
+      for (ConcurrentHashMap<Double, double[]> byAlpha : this.levelResults.values()) {
+         numCached += byAlpha.size();
+      }
+      return numCached;
+   }
+
+   public int getNumLevels() {
+      return numLevels;
+   }
+
+   public void setNumLevels(int numLevels) {
+      if (numLevels < 2 || numLevels > 3) {
+         throw new IllegalArgumentException("RichardsonExtrapolation: need 2 or 3 levels, got " + numLevels);
+      }
+      this.numLevels = numLevels;
+   }
+
+   public double getRatio() {
+      return ratio;
+   }
+
+   public void setRatio(double ratio) {
+      if ( !(ratio > 1) ) {
+         throw new IllegalArgumentException("RichardsonExtrapolation: refinement ratio must be > 1");
+      }
+      this.ratio = ratio;
+   }
+
+   public double getAssumedOrder() {
+      return assumedOrder;
+   }
+
+   public void setAssumedOrder(double assumedOrder) {
+      if ( !(assumedOrder > 0) ) {
+         throw new IllegalArgumentException("RichardsonExtrapolation: order must be > 0");
+      }
+      this.assumedOrder = assumedOrder;
+   }
+
+   public VortexPanelSolver.LINEARSOLVER getLinearSolver() {
+      return linearSolver;
+   }
+
+   public void setLinearSolver(VortexPanelSolver.LINEARSOLVER linearSolver) {
+      this.linearSolver = linearSolver;
+   }
+
+}
@@ -0,0 +1,62 @@
+package solvers;
+
+/* * * * * * * * * * * * * * *
+ *  Plain loop VectorOps, the fallback for JVMs
+ * without the Vector API. HotSpot auto vectorizes
+ * the simple element wise loops here but not the
+ * reductions
+ * * * * * * * * * * * * * * */
+public class ScalarVectorOps implements VectorOps {
+
+   @Override
+   public void subtractScaled(double[] y, int yOff, double[] x, int xOff, double scale, int len) {
+      for (int i = 0; i < len; i++) {
+         y[yOff + i] = y[yOff + i] - (x[xOff + i] * scale);
+      }
+   }
+
+   @Override
+   public double dot(double[] x, int xOff, double[] y, int yOff, int len) {
+      double rollingSum = 0;
+      for (int i = 0; i < len; i++) {
+         rollingSum += x[xOff + i] * y[yOff + i];
+      }
+      return rollingSum;
+   }
+
+   @Override
+   public double sum(double[] x, int off, int len) {
+      double res = 0;
+      for (int i = 0; i < len; i++) {
+         res += x[off + i];
+      }
+      return res;
+   }
+
+   @Override
+   public void multiply(double[] x, double[] y, double[] res, int len) {
+      for (int i = 0; i < len; i++) {
+         res[i] = x[i] * y[i];
+      }
+   }
+
+   @Override
+   public void multiplyByConst(double[] x, double theVal, double[] res, int len) {
+      for (int i = 0; i < len; i++) {
+         res[i] = x[i] * theVal;
+      }
+   }
+
+   @Override
+   public void addConst(double[] x, double theVal, double[] res, int len) {
+      for (int i = 0; i < len; i++) {
+         res[i] = x[i] + theVal;
+      }
+   }
+
+   @Override
+   public String getName() {
+      return "scalar";
+   }
+
+}
@@ -0,0 +1,474 @@
+package solvers;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import geometryContainers.PanelSet;
+
+/* * * * * * * * * * * * * * *
+ *  Hierarchical (tree code) influence operator,
+ * the Kutta augmented normal integral applied in
+ * O(n log n) without ever being stored
+ *
+ * with z = x_i + i y_i the control point and w the
+ * points of panel j, both integrals of a row come
+ * out of one complex sum,
+ *
+ *    S_ij = e^(i phi_i) integ thru panel j of ds / (z - w)
+ *    normal = -Re(S_ij),   tangential = Im(S_ij)
+ *
+ * and 1/(z - w) = sum_k (w - c)^k / (z - c)^(k+1)
+ * for |w - c| < |z - c|. so a cluster of panels
+ * round a center c acts on a distant control point
+ * through order + 1 complex moments,
+ *
+ *    M_k = sum_j gamma_j integ thru panel j of (w - c)^k ds
+ *
+ * which are exact for straight panels. the panels
+ * lie along a closed curve in surface order, so the
+ * clusters are a PanelClusterTree of index ranges, each
+ * node a contiguous stretch of surface. a node is
+ * far from z when its radius is under openingAngle
+ * times the distance, the error of its series is
+ * then below openingAngle^(order+1) relative. near
+ * nodes are opened, leaves that are still near are
+ * done exactly with the assembler's own cells.
+ * which nodes are far and the near cells only
+ * depend on the geometry, so they are sorted out and
+ * computed once per row, an apply is then just the
+ * moments, the series and the stored near cells
+ *
+ * row n - 1 of the normal operator is the Kutta row,
+ * gamma_0 + gamma_n-1, as in the dense matrix
+ * * * * * * * * * * * * * * */
+public class TreeCodeOperator implements InfluenceOperator {
+
+   public static final double DEFAULT_TOLERANCE = 1e-10;
+   public static final double DEFAULT_OPENING_ANGLE = 0.5;
+   public static final int DEFAULT_LEAF_SIZE = 32;
+   private static final int PARALLEL_THRESHOLD = GeometricIntegralAssembler.DEFAULT_PARALLEL_THRESHOLD;
+   private static final int ROWS_PER_TASK = 64;
+
+   private final PanelSet panels;
+   private final GeometricIntegralAssembler assembler;
+   private final int numPanels;
+   private final double openingAngle;
+   private final int order;
+   private final int leafSize;
+
+   // the tree, node 0 is the root, children of node k are left[k] and left[k] + 1
+   private final PanelClusterTree tree;
+   private final int numNodes;
+   private final int[] nodeStart;
+   private final int[] nodeEnd;
+   private final int[] left;
+   private final double[] centerRe;
+   private final double[] centerIm;
+   private final double[] farRadius;    // radius / openingAngle
+
+   // per row, the far nodes and the near leaves with their exact cells,
+   // fixed by the geometry so found once
+   private final int[][] rowFarNodes;
+   private final int[][] rowNearLeaves;
+   private final double[][] rowNearNormal;
+   private final double[][] rowNearTangential;
+
+   // moments of each unit strength panel about its leaf center, panel * (order + 1) + k
+   private final double[] panelMomentRe;
+   private final double[] panelMomentIm;
+   // binomial(l, k) at l * (order + 1) + k
+   private final double[] binomial;
+
+   public TreeCodeOperator(PanelSet panels) {
+      this(panels, DEFAULT_TOLERANCE);
+   }
+
+   // order picked so openingAngle^(order+1) is below tolerance
+   public TreeCodeOperator(PanelSet panels, double tolerance) {
+      this(panels, DEFAULT_OPENING_ANGLE, orderFor(tolerance, DEFAULT_OPENING_ANGLE), DEFAULT_LEAF_SIZE);
+   }
+
+   public TreeCodeOperator(PanelSet panels, double openingAngle, int order, int leafSize) {
+      if (openingAngle <= 0 || openingAngle >= 1) {
+         throw new IllegalArgumentException("TreeCodeOperator: opening angle must be between 0 and 1");
+      }
+      if (order < 0) {
+         throw new IllegalArgumentException("TreeCodeOperator: order must be >= 0");
+      }
+      this.panels = panels;
+      this.assembler = new GeometricIntegralAssembler(panels);
+      this.numPanels = panels.getNumberOfPanels();
+      this.openingAngle = openingAngle;
+      this.order = order;
+      this.leafSize = leafSize;
+
+      int terms = order + 1;
+      this.binomial = new double[terms * terms];
+      for (int l = 0; l < terms; l++) {
+         this.binomial[l * terms] = 1;
+         for (int k = 1; k <= l; k++) {
+            this.binomial[l * terms + k] = this.binomial[(l - 1) * terms + k - 1]
+                  + ((k < l) ? this.binomial[(l - 1) * terms + k] : 0);
+         }
+      }
+
+      this.tree = new PanelClusterTree(panels, leafSize);
+      this.numNodes = this.tree.getNumNodes();
+      this.nodeStart = this.tree.getNodeStart();
+      this.nodeEnd = this.tree.getNodeEnd();
+      this.left = this.tree.getLeft();
+      this.centerRe = this.tree.getCenterX();
+      this.centerIm = this.tree.getCenterY();
+      this.farRadius = new double[this.numNodes];
+      for (int node = 0; node < this.numNodes; node++) {
+         this.farRadius[node] = this.tree.getRadius()[node] / openingAngle;
+      }
+      this.panelMomentRe = new double[this.numPanels * terms];
+      this.panelMomentIm = new double[this.numPanels * terms];
+      this.buildPanelMoments(0);
+
+      this.rowFarNodes = new int[this.numPanels][];
+      this.rowNearLeaves = new int[this.numPanels][];
+      this.rowNearNormal = new double[this.numPanels][];
+      this.rowNearTangential = new double[this.numPanels][];
+      this.runRows(null, null, null, null, null);
+   }
+
+   private static int orderFor(double tolerance, double openingAngle) {
+      return Math.max(2, (int) Math.ceil(Math.log(tolerance) / Math.log(openingAngle)) - 1);
+   }
+
+   //    integ thru panel j of (w - c)^k ds = ((w1 - c)^(k+1) - (w0 - c)^(k+1)) / ((k+1) e^(i phi_j))
+   private void buildPanelMoments(int node) {
+      if (this.left[node] >= 0) {
+         this.buildPanelMoments(this.left[node]);
+         this.buildPanelMoments(this.left[node] + 1);
+         return;
+      }
+
+      double[] X = this.panels.getX();
+      double[] Y = this.panels.getY();
+      double[] cosPhi = this.panels.getCosPhi();
+      double[] sinPhi = this.panels.getSinPhi();
+      int terms = this.order + 1;
+      double cx = this.centerRe[node];
+      double cy = this.centerIm[node];
+
+      for (int j = this.nodeStart[node]; j < this.nodeEnd[node]; j++) {
+         double ar = X[j] - cx;
+         double ai = Y[j] - cy;
+         double br = X[j + 1] - cx;
+         double bi = Y[j + 1] - cy;
+         // powers (w - c)^(k+1) of both ends, divided by e^(i phi_j) = multiplied by its conjugate
+         double pa_r = ar;
+         double pa_i = ai;
+         double pb_r = br;
+         double pb_i = bi;
+         for (int k = 0; k < terms; k++) {
+            double dr = pb_r - pa_r;
+            double di = pb_i - pa_i;
+            this.panelMomentRe[j * terms + k] = ((dr * cosPhi[j]) + (di * sinPhi[j])) / (k + 1);
+            this.panelMomentIm[j * terms + k] = ((di * cosPhi[j]) - (dr * sinPhi[j])) / (k + 1);
+
+            double t = pa_r * ar - pa_i * ai;
+            pa_i = pa_r * ai + pa_i * ar;
+            pa_r = t;
+            t = pb_r * br - pb_i * bi;
+            pb_i = pb_r * bi + pb_i * br;
+            pb_r = t;
+         }
+      }
+   }
+
+   // complex moments of every node for strengths x, node * (order + 1) + k
+   private void upwardPass(double[] x, double[] momRe, double[] momIm) {
+      int terms = this.order + 1;
+      // children are numbered after their parents, so backwards is bottom up
+      for (int node = this.numNodes - 1; node >= 0; node--) {
+         int base = node * terms;
+         if (this.left[node] < 0) {
+            for (int j = this.nodeStart[node]; j < this.nodeEnd[node]; j++) {
+               double xj = x[j];
+               int pBase = j * terms;
+               for (int k = 0; k < terms; k++) {
+                  momRe[base + k] += xj * this.panelMomentRe[pBase + k];
+                  momIm[base + k] += xj * this.panelMomentIm[pBase + k];
+               }
+            }
+            continue;
+         }
+
+         for (int child = this.left[node]; child <= this.left[node] + 1; child++) {
+            // shift the child's moments to this center,
+            //    M_l = sum_k binomial(l, k) M_child_k (c_child - c)^(l - k)
+            double dr = this.centerRe[child] - this.centerRe[node];
+            double di = this.centerIm[child] - this.centerIm[node];
+            int cBase = child * terms;
+            double[] powRe = new double[terms];
+            double[] powIm = new double[terms];
+            powRe[0] = 1;
+            for (int k = 1; k < terms; k++) {
+               powRe[k] = powRe[k - 1] * dr - powIm[k - 1] * di;
+               powIm[k] = powRe[k - 1] * di + powIm[k - 1] * dr;
+            }
+            for (int l = 0; l < terms; l++) {
+               double sumRe = 0;
+               double sumIm = 0;
+               for (int k = 0; k <= l; k++) {
+                  double b = this.binomial[l * terms + k];
+                  double mr = momRe[cBase + k];
+                  double mi = momIm[cBase + k];
+                  double pr = powRe[l - k];
+                  double pi = powIm[l - k];
+                  sumRe += b * (mr * pr - mi * pi);
+                  sumIm += b * (mr * pi + mi * pr);
+               }
+               momRe[base + l] += sumRe;
+               momIm[base + l] += sumIm;
+            }
+         }
+      }
+   }
+
+   // sorts the tree into far nodes and near leaves for rows [rowStart, rowEnd)
+   //    and keeps the exact cells of the near leaves
+   private void buildRows(int rowStart, int rowEnd) {
+      double[] xc = this.panels.getXc();
+      double[] yc = this.panels.getYc();
+      int[] stack = new int[64];
+      int[] far = new int[64];
+      int[] near = new int[16];
+      double[] cell = new double[2];
+
+      for (int i = rowStart; i < rowEnd; i++) {
+         int numFar = 0;
+         int numNear = 0;
+         int numCells = 0;
+
+         int top = 0;
+         stack[top++] = 0;
+         while (top > 0) {
+            int node = stack[--top];
+            double dist = Math.hypot(xc[i] - this.centerRe[node], yc[i] - this.centerIm[node]);
+
+            if (dist > this.farRadius[node]) {
+               if (numFar == far.length) {
+                  far = Arrays.copyOf(far, 2 * far.length);
+               }
+               far[numFar++] = node;
+            } else if (this.left[node] < 0) {
+               if (numNear == near.length) {
+                  near = Arrays.copyOf(near, 2 * near.length);
+               }
+               near[numNear++] = node;
+               numCells += this.nodeEnd[node] - this.nodeStart[node];
+            } else {
+               if (top + 2 > stack.length) {
+                  stack = Arrays.copyOf(stack, 2 * stack.length);
+               }
+               stack[top++] = this.left[node] + 1;
+               stack[top++] = this.left[node];
+            }
+         }
+
+         double[] normal = new double[numCells];
+         double[] tangential = new double[numCells];
+         int c = 0;
+         for (int t = 0; t < numNear; t++) {
+            for (int j = this.nodeStart[near[t]]; j < this.nodeEnd[near[t]]; j++) {
+               this.assembler.calculateCell(i, j, cell);
+               normal[c] = cell[0];
+               tangential[c] = cell[1];
+               c++;
+            }
+         }
+         this.rowFarNodes[i] = Arrays.copyOf(far, numFar);
+         this.rowNearLeaves[i] = Arrays.copyOf(near, numNear);
+         this.rowNearNormal[i] = normal;
+         this.rowNearTangential[i] = tangential;
+      }
+   }
+
+   // normal (outRe) and / or tangential (outIm) sums of S_ij x_j for rows [rowStart, rowEnd)
+   private void evaluateRows(double[] x, double[] momRe, double[] momIm,
+         double[] outRe, double[] outIm, int rowStart, int rowEnd) {
+
+      double[] xc = this.panels.getXc();
+      double[] yc = this.panels.getYc();
+      double[] cosPhi = this.panels.getCosPhi();
+      double[] sinPhi = this.panels.getSinPhi();
+      int terms = this.order + 1;
+
+      for (int i = rowStart; i < rowEnd; i++) {
+         double zr = xc[i];
+         double zi = yc[i];
+
+         // far field sum of 1 / (z - w), rotated by e^(i phi_i) at the end
+         double farRe = 0;
+         double farIm = 0;
+         int[] far = this.rowFarNodes[i];
+         for (int t = 0; t < far.length; t++) {
+            int node = far[t];
+            double dr = zr - this.centerRe[node];
+            double di = zi - this.centerIm[node];
+            double dist2 = (dr * dr) + (di * di);
+
+            // u = 1 / (z - c), series by Horner, u (M_0 + u (M_1 + u (...)))
+            double ur = dr / dist2;
+            double ui = -di / dist2;
+            int base = node * terms;
+            double sr = momRe[base + this.order];
+            double si = momIm[base + this.order];
+            for (int k = this.order - 1; k >= 0; k--) {
+               double tmp = sr * ur - si * ui + momRe[base + k];
+               si = sr * ui + si * ur + momIm[base + k];
+               sr = tmp;
+            }
+            farRe += sr * ur - si * ui;
+            farIm += sr * ui + si * ur;
+         }
+         // S = e^(i phi_i) * far, normal = -Re(S), tangential = Im(S)
+         double sRe = cosPhi[i] * farRe - sinPhi[i] * farIm;
+         double sIm = cosPhi[i] * farIm + sinPhi[i] * farRe;
+
+         int[] near = this.rowNearLeaves[i];
+         if (outRe != null) {
+            outRe[i] = this.nearSum(near, this.rowNearNormal[i], x) - sRe;
+         }
+         if (outIm != null) {
+            outIm[i] = this.nearSum(near, this.rowNearTangential[i], x) + sIm;
+         }
+      }
+   }
+
+   private double nearSum(int[] near, double[] cells, double[] x) {
+      double rollingSum = 0;
+      int c = 0;
+      for (int t = 0; t < near.length; t++) {
+         for (int j = this.nodeStart[near[t]]; j < this.nodeEnd[near[t]]; j++) {
+            rollingSum += cells[c++] * x[j];
+         }
+      }
+      return rollingSum;
+   }
+
+   // x == null builds the row lists, otherwise evaluates the rows
+   private void runRows(double[] x, double[] momRe, double[] momIm, double[] outRe, double[] outIm) {
+      if (this.numPanels >= PARALLEL_THRESHOLD) {
+         ForkJoinPool.commonPool().invoke(new RowBlockTask(x, momRe, momIm, outRe, outIm, 0, this.numPanels));
+      } else if (x == null) {
+         this.buildRows(0, this.numPanels);
+      } else {
+         this.evaluateRows(x, momRe, momIm, outRe, outIm, 0, this.numPanels);
+      }
+   }
+
+   // normal (Re) and / or tangential (Im) products for all rows
+   private void evaluate(double[] x, double[] outRe, double[] outIm) {
+      int terms = this.order + 1;
+      double[] momRe = new double[this.numNodes * terms];
+      double[] momIm = new double[this.numNodes * terms];
+      this.upwardPass(x, momRe, momIm);
+      this.runRows(x, momRe, momIm, outRe, outIm);
+   }
+
+   // y = A x, A the Kutta augmented normal integral
+   @Override
+   public void apply(double[] x, double[] y) {
+      this.evaluate(x, y, null);
+
+      // Kutta row
+      int last = this.numPanels - 1;
+      y[last] = x[0] + x[last];
+   }
+
+   // y = - tangential integral * x, as GeometricIntegralAssembler.multiplyTangential()
+   @Override
+   public void multiplyTangential(double[] x, double[] y) {
+      this.evaluate(x, null, y);
+      for (int i = 0; i < this.numPanels; i++) {
+         y[i] = -y[i];
+      }
+   }
+
+   // exact entry of the Kutta augmented normal integral
+   @Override
+   public double getEntry(int i, int j) {
+      if (i == this.numPanels - 1) {
+         return (j == 0 || j == i) ? 1 : 0;
+      }
+      double[] cell = new double[2];
+      this.assembler.calculateCell(i, j, cell);
+      return cell[0];
+   }
+
+   @Override
+   public int getSize() {
+      return numPanels;
+   }
+
+   private class RowBlockTask extends RecursiveAction {
+
+      private static final long serialVersionUID = 1L;
+      private final double[] x;
+      private final double[] momRe;
+      private final double[] momIm;
+      private final double[] outRe;
+      private final double[] outIm;
+      private final int rowStart;
+      private final int rowEnd;
+
+      RowBlockTask(double[] x, double[] momRe, double[] momIm, double[] outRe, double[] outIm,
+            int rowStart, int rowEnd) {
+         this.x = x;
+         this.momRe = momRe;
+         this.momIm = momIm;
+         this.outRe = outRe;
+         this.outIm = outIm;
+         this.rowStart = rowStart;
+         this.rowEnd = rowEnd;
+      }
+
+      @Override
+      protected void compute() {
+         if (this.rowEnd - this.rowStart <= ROWS_PER_TASK) {
+            if (this.x == null) {
+               buildRows(this.rowStart, this.rowEnd);
+            } else {
+               evaluateRows(this.x, this.momRe, this.momIm, this.outRe, this.outIm, this.rowStart, this.rowEnd);
+            }
+            return;
+         }
+         int mid = (this.rowStart + this.rowEnd) >>> 1;
+         invokeAll(new RowBlockTask(this.x, this.momRe, this.momIm, this.outRe, this.outIm, this.rowStart, mid),
+               new RowBlockTask(this.x, this.momRe, this.momIm, this.outRe, this.outIm, mid, this.rowEnd));
+      }
+   }
+
+   /* Getters */
+   public PanelSet getPanels() {
+      return panels;
+   }
+
+   public double getOpeningAngle() {
+      return openingAngle;
+   }
+
+   public int getOrder() {
+      return order;
+   }
+
+   public int getLeafSize() {
+      return leafSize;
+   }
+
+   public int getNumNodes() {
+      return numNodes;
+   }
+
+   public PanelClusterTree getTree() {
+      return tree;
+   }
+
+}
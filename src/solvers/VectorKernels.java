@@ -0,0 +1,50 @@
+package solvers;
+
+/* * * * * * * * * * * * * * *
+ *  Picks the VectorOps implementation once per JVM
+ *
+ * the SIMD kernels live in solvers.simd, which is
+ * only compiled by the jdk17 "simd" maven profile and
+ * only links when the JVM runs with
+ *    --add-modules jdk.incubator.vector
+ * both are checked reflectively, anything missing
+ * falls back to the scalar kernels. the system
+ * property vectorOps=scalar forces the fallback
+ * * * * * * * * * * * * * * */
+public final class VectorKernels {
+
+   private static final String VECTOR_API_CLASS = "jdk.incubator.vector.DoubleVector";
+   private static final String SIMD_OPS_CLASS = "solvers.simd.SimdVectorOps";
+
+   private static final VectorOps SCALAR = new ScalarVectorOps();
+   private static final VectorOps BEST = findBest();
+
+   private VectorKernels() {
+   }
+
+   // fastest implementation this JVM supports
+   public static VectorOps get() {
+      return BEST;
+   }
+
+   public static VectorOps scalar() {
+      return SCALAR;
+   }
+
+   public static boolean isSimdAvailable() {
+      return BEST != SCALAR;
+   }
+
+   private static VectorOps findBest() {
+      if ("scalar".equalsIgnoreCase(System.getProperty("vectorOps"))) {
+         return SCALAR;
+      }
+      try {
+         Class.forName(VECTOR_API_CLASS);
+         return (VectorOps) Class.forName(SIMD_OPS_CLASS).getDeclaredConstructor().newInstance();
+      } catch (Exception | LinkageError e) {
+         return SCALAR;
+      }
+   }
+
+}
@@ -0,0 +1,40 @@
+package solvers;
+
+/* * * * * * * * * * * * * * *
+ *  Kernel layer for the inner loops of the matrix
+ * code, row updates and reductions over a slice of
+ * a double[]
+ *
+ * ScalarVectorOps is plain Java and runs everywhere,
+ * solvers.simd.SimdVectorOps uses the incubating
+ * Vector API when the JVM has it. get one through
+ * VectorKernels.get()
+ *
+ * subtractScaled and the element wise ops give the
+ * same bits in every implementation, the reductions
+ * (dot, sum) may differ in the last place since a
+ * vector kernel adds in a different order
+ * * * * * * * * * * * * * * */
+public interface VectorOps {
+
+   // y[yOff + i] = y[yOff + i] - x[xOff + i] * scale, the row update of elimination
+   void subtractScaled(double[] y, int yOff, double[] x, int xOff, double scale, int len);
+
+   // sum of x[xOff + i] * y[yOff + i]
+   double dot(double[] x, int xOff, double[] y, int yOff, int len);
+
+   // sum of x[off + i]
+   double sum(double[] x, int off, int len);
+
+   // res[i] = x[i] * y[i]
+   void multiply(double[] x, double[] y, double[] res, int len);
+
+   // res[i] = x[i] * theVal
+   void multiplyByConst(double[] x, double theVal, double[] res, int len);
+
+   // res[i] = x[i] + theVal
+   void addConst(double[] x, double theVal, double[] res, int len);
+
+   String getName();
+
+}
@@ -1,14 +1,30 @@
 package solvers;
 
 
+import dataContainers.AirfoilPolar;
 import dataContainers.GeometricIntegral;
+import dataContainers.InfluenceMatrixCache;
+import dataContainers.InfluenceMatrixStore;
 import geometryContainers.AirfoilGeometry;
+import geometryContainers.GeometryKey;
+import geometryContainers.PanelSet;
 
 
 
 
 public class VortexPanelSolver {
 
+   // how the Kutta augmented influence system is solved
+   //    DIRECT          - LU factor once, O(n^3), then O(n^2) per rhs
+   //    MIXED_PRECISION - float LU factor refined to double accuracy
+   //                      per rhs, double LU if refinement fails
+   //    GMRES           - preconditioned restarted GMRES to epsilon relative
+   //                      residual, O(k n^2) per rhs and no factor
+   //    TREECODE        - GMRES on a TreeCodeOperator, far panels by multipole
+   //                      series, O(k n log n) per rhs and no n x n matrix at all
+   //    HMATRIX         - GMRES on an HMatrixOperator, far blocks compressed to
+   //                      low rank by ACA, O(n log n) memory and assembly
+   public enum LINEARSOLVER{ DIRECT,MIXED_PRECISION,GMRES,TREECODE,HMATRIX;}
 
    private AirfoilGeometry airfoil;
    private final double epsilon = .0000001; //max resolution
@@ -18,6 +34,26 @@ public class VortexPanelSolver {
    
    private double[] vortexStrengths;   
    private GeometricIntegral geometricIntegral;
+   private LUFactorization luFactorization;
+   private MixedPrecisionLU mixedPrecisionFactorization;
+
+   private LINEARSOLVER linearSolver = LINEARSOLVER.DIRECT;
+   private LinearOperator influenceOperator;
+   private Preconditioner preconditioner;
+   private GMRESSolver gmresSolver = new GMRESSolver(this.epsilon);
+   private int preconditionerBlockSize = BlockJacobiPreconditioner.DEFAULT_BLOCK_SIZE;
+   private double treeCodeTolerance = TreeCodeOperator.DEFAULT_TOLERANCE;
+   private double hMatrixTolerance = HMatrixOperator.DEFAULT_TOLERANCE;
+   // start of the next iterative solve only, the factored solvers ignore it
+   private double[] initialGuess;
+
+   // incremental geometry updates, see updateGeometry()
+   public static final double DEFAULT_MAX_UPDATE_FRACTION = 0.125;
+   private double maxUpdateFraction = DEFAULT_MAX_UPDATE_FRACTION;
+   private WoodburyFactorization woodburyFactorization;
+   private PanelSet updatedPanels;        // the shape the update solves for
+   private PanelSet updateBasePanels;     // the factored shape it is relative to
+   private GeometricIntegral updateBaseIntegral;
 
    private double[] tangentialVeloc;
    private double[] coeffOfPressure;  
@@ -30,9 +66,44 @@ public class VortexPanelSolver {
    private double Cl;
    private double Cm;
    private double[] phi;
+   private PanelSet panels;
+   private double solvedAlphaRad;
+   // gamma_j / 2 pi, scratch for the tangential velocity sum
+   private double[] gammaOver2Pi;
+
+   // Vt, Cp, Cn, Ca and the pressure Cl, Cd, Cm are only built when
+   // first asked for after a solve, see ensureDistributions()
+   private boolean distributionsPending;
+   private boolean pendingFromBaseSolutions;
+   // Cl from the circulation alone, no Vt or Cp unless Cd, Cm or a
+   // distribution is asked for
+   private boolean coefficientsOnly;
+   // no tangential integral is assembled, its rows are recomputed when Vt
+   // is needed, one n x n matrix less held per shape
+   private boolean lowMemory;
+   private double circulation;
+   private double circulationCm;
    
    //if there's time refine Cd using boundary layer eqns
    private double Cd;
+
+   private int parallelAssemblyThreshold = GeometricIntegralAssembler.DEFAULT_PARALLEL_THRESHOLD;
+
+   // influence matrices and LU factors of every shape solved in this JVM
+   private static final InfluenceMatrixCache<LUFactorization> SHARED_INFLUENCE_CACHE =
+         new InfluenceMatrixCache<LUFactorization>();
+   private InfluenceMatrixCache<LUFactorization> influenceCache = SHARED_INFLUENCE_CACHE;
+
+   // superposition mode, base solutions at alpha = 0 and alpha = 90 deg
+   private boolean superpositionMode;
+   private PanelSet basePanels;
+   private double baseVinfinity;
+   private double[] baseGamma0;
+   private double[] baseGamma90;
+   private double[] baseVt0;
+   private double[] baseVt90;
+   private GeometricIntegral baseGeometricIntegral;   // for the deferred base Vt
+   private LinearOperator baseInfluenceOperator;
    
    /* Constructors  */
    public VortexPanelSolver() {
@@ -60,10 +131,10 @@ public class VortexPanelSolver {
       //double panelCoordSum[] = new double[this.airfoil.getNumberOfCtrlPoints()];
       double panelCoordSum = 0.0;
       
+      double[] x = this.airfoil.getPanelSet().getX();
+      double[] y = this.airfoil.getPanelSet().getY();
       for (int i = 0; i < this.airfoil.getNumberOfCtrlPoints(); i++) {
-         double[] currPt = this.airfoil.getPointCoords(i);
-         double[] ptPlusOne = this.airfoil.getPointCoords(i + 1);
-         panelCoordSum += (ptPlusOne[0] - currPt[0]) * ( ptPlusOne[1] + currPt[1]);
+         panelCoordSum += (x[i + 1] - x[i]) * ( y[i + 1] + y[i]);
       }
 
       //MatrixSolver ms = new MatrixSolver();
@@ -89,46 +160,103 @@ public class VortexPanelSolver {
       }
 
       this.airfoil.generateControlPoints();
+      this.invalidateBaseSolutions();
 
    }
 
 
    // Solver
    public void runVPMSolver() {
+      this.runVPMSolver(this.airfoil.getangleOfAttackRad());
+   }
 
-      // Numerical integration variables
-      // Calculate each panels: 
-      //    x length, 
-      //    y height, 
-      //    s total length, 
-      //    phi the angle the panel makes with the X axis
-      //    beta, the angle the panel normal makes with freestream veloc
-      double[] s = new double[this.airfoil.getNumberOfCtrlPoints()];
-      double[] phi = new double[this.airfoil.getNumberOfCtrlPoints()];
-      double[] beta = new double[this.airfoil.getNumberOfCtrlPoints()];
+   // solves at the given alpha, the airfoils own angle of attack is not read or changed
+   public void runVPMSolver(double alphaRad) {
+      if (this.superpositionMode) {
+         this.prepareBaseSolutions();
+         this.solveSuperposedAlpha(alphaRad);
+      } else {
+         this.prepareInfluenceMatrix();
+         this.solveAtAlpha(alphaRad);
+      }
+   }
 
-      for (int i = 0; i < this.airfoil.getNumberOfCtrlPoints(); i++) {
-         double[] currPt = this.airfoil.getPointCoords(i);
-         double[] ptPlusOne = this.airfoil.getPointCoords(i + 1);
+   // Polar sweep
+   //    the influence matrix and its factor are built once,
+   //    the right hand sides of every alpha are then solved
+   //    together in one batched pass over the factor
+   public AirfoilPolar runPolar(double alphaStartRad, double alphaEndRad, double stepRad) {
+      return this.runPolar(alphaStartRad, alphaEndRad, stepRad, false);
+   }
 
-         double dx = (ptPlusOne[0] - currPt[0]);
-         double dy = (ptPlusOne[1] - currPt[1]);
-         s[i] =  Math.sqrt( (Math.pow(dx, 2) + Math.pow(dy, 2)) );
-         phi[i] = Math.atan2(dy, dx);
+   public AirfoilPolar runPolar(double alphaStartRad, double alphaEndRad, double stepRad, boolean keepCp) {
 
-         if (phi[i] < 0) {
-            phi[i] = phi[i] + 2 * Math.PI;
-         }        
+      if ( !(stepRad > 0) || alphaEndRad < alphaStartRad ) {
+         throw new IllegalArgumentException("VortexPanelSolver: polar needs alphaStart <= alphaEnd and step > 0");
+      }
 
-         beta[i] = phi[i] + ( Math.PI / 2 ) - this.airfoil.getangleOfAttackRad();         
+      // small slack so an end point that is a whole number of steps is not lost to round off
+      int numAlphas = (int) Math.floor( ((alphaEndRad - alphaStartRad) / stepRad) + 1e-9 ) + 1;
+
+      double[] alphas = new double[numAlphas];
+      double[] cls = new double[numAlphas];
+      double[] cds = new double[numAlphas];
+      double[] cms = new double[numAlphas];
+      double[][] cps = keepCp ? new double[numAlphas][] : null;
+
+      this.prepareInfluenceMatrix();
+
+      int numPanels = this.airfoil.getNumberOfCtrlPoints();
+      double[][] rhsBlock = new double[numPanels][numAlphas];
+      for (int a = 0; a < numAlphas; a++) {
+         alphas[a] = alphaStartRad + (a * stepRad);
+         double[] VinfArray = this.calculateVinfinities(this.calculateBetas(alphas[a]));
+         //satisfy Kutta Condition in Vinf array
+         VinfArray[numPanels - 1] = 0;
+         for (int i = 0; i < numPanels; i++) {
+            rhsBlock[i][a] = VinfArray[i];
+         }
+      }
+      double[][] gammaBlock = this.solveInfluenceSystem(rhsBlock);
 
-         if (beta[i] > ( 2 * Math.PI ) ) {
-            beta[i] = beta[i] - (2 * Math.PI);
+      for (int a = 0; a < numAlphas; a++) {
+         this.calculateBetas(alphas[a]);
+         this.vortexStrengths = new double[numPanels];
+         for (int i = 0; i < numPanels; i++) {
+            this.vortexStrengths[i] = gammaBlock[i][a];
+         }
+         this.finishSolve(false);
+
+         cls[a] = this.getCl();
+         cds[a] = this.getCd();
+         cms[a] = this.getCm();
+         if (keepCp) {
+            cps[a] = this.getCoeffOfPressure();
          }
       }
-      this.beta = beta;
-      this.s = s;
-      this.phi = phi;
+
+      return new AirfoilPolar(alphas, cls, cds, cms, cps);
+   }
+
+   // everything here is independent of angle of attack
+   private void prepareInfluenceMatrix() {
+
+      // Numerical integration variables, per panel:
+      //    s total length, 
+      //    phi the angle the panel makes with the X axis
+      // cached on the airfoil until its shape changes
+      PanelSet panels = this.airfoil.getPanelSet();
+      this.panels = panels;
+      this.s = panels.getS();
+      this.phi = panels.getPhi();
+
+      // a shape reached through updateGeometry() keeps its updated factor
+      if (this.woodburyFactorization != null) {
+         if (this.updatedPanels == panels && this.linearSolver == LINEARSOLVER.DIRECT) {
+            return;
+         }
+         this.clearGeometryUpdate();
+      }
       /* * * * * * * * * * * * * * * * * * * * * * * * * * *
        * Geometric integral
        *    represents
@@ -138,187 +266,689 @@ public class VortexPanelSolver {
        *   where i loops thru the control points, and j 
        *   loops thru all panels i != j
        * * * * * * * * * * * * * * * * * * * * * * * * * * */
-      GeometricIntegral geometricIntegral = this.calculateGeometricIntegral(s, phi);
-      double [] VinfArray = this.calculateVinfinities(beta);
+      // the same shape seen before, from any airfoil object, skips assembly
+      // and for the direct solver the factor too
+      if (this.linearSolver == LINEARSOLVER.TREECODE || this.linearSolver == LINEARSOLVER.HMATRIX) {
+         // matrix free, the preconditioner reads and factors only the exact
+         // near diagonal blocks
+         InfluenceOperator operator = (this.linearSolver == LINEARSOLVER.TREECODE)
+               ? new TreeCodeOperator(panels, this.treeCodeTolerance)
+               : new HMatrixOperator(panels, this.hMatrixTolerance);
+         this.geometricIntegral = null;
+         this.influenceOperator = operator;
+         this.preconditioner = new BlockJacobiPreconditioner(operator, this.preconditionerBlockSize);
+         this.luFactorization = null;
+         this.mixedPrecisionFactorization = null;
+         return;
+      }
 
-      this.geometricIntegral = geometricIntegral;
+      GeometryKey key = null;
+      InfluenceMatrixCache.Entry<LUFactorization> cached = null;
+      if (this.influenceCache != null) {
+         key = panels.getGeometryKey();
+         cached = this.influenceCache.get(key);
+         if (cached == null) {
+            cached = this.loadStoredInfluence(key);
+         }
+      }
+
+      GeometricIntegral geometricIntegral;
+      if (cached != null) {
+         geometricIntegral = cached.getGeometricIntegral();
+      } else {
+         geometricIntegral = this.calculateGeometricIntegral(panels);
+
+         //satisfy Kutta Condition in Normal Integ, done before the integral is shared
+         double[][] normalInteg = geometricIntegral.getNormalIntegral();
+         int index2Replace = this.airfoil.getNumberOfCtrlPoints() - 1;
+         for (int i = 0; i < this.airfoil.getNumberOfCtrlPoints(); i++) {
+            normalInteg[index2Replace][i] = 0;
+         }
+         normalInteg[index2Replace][0] = 1;
+         normalInteg[index2Replace][index2Replace] = 1;
+      }
 
-      //satisfy Kutta Condition in Normal Integ and Vinf array
+      this.geometricIntegral = geometricIntegral;
       double[][] normalIntegWKuttaCond = geometricIntegral.getNormalIntegral();
-      int index2Replace = this.airfoil.getNumberOfCtrlPoints() - 1;
-      for (int i = 0; i < this.airfoil.getNumberOfCtrlPoints(); i++) {
-         normalIntegWKuttaCond[index2Replace][i] = 0;
+
+      if (this.linearSolver == LINEARSOLVER.GMRES) {
+         // near diagonal blocks precondition the iteration, nothing is factored whole
+         DenseMatrix influence = DenseMatrix.fromArray(normalIntegWKuttaCond,
+               this.airfoil.getNumberOfCtrlPoints(), this.airfoil.getNumberOfCtrlPoints());
+         this.influenceOperator = influence;
+         this.preconditioner = new BlockJacobiPreconditioner(influence, this.preconditionerBlockSize);
+         this.luFactorization = null;
+         this.mixedPrecisionFactorization = null;
+         this.cacheInfluence(key, cached, geometricIntegral, null);
+         return;
       }
-      normalIntegWKuttaCond[index2Replace][0] = 1;
-      normalIntegWKuttaCond[index2Replace][index2Replace] = 1;
-      VinfArray[index2Replace] = 0;
+      this.influenceOperator = null;
+      this.preconditioner = null;
 
       //use matrixSolver class here
       MatrixSolver matrixSolver = new MatrixSolver();
       matrixSolver.setNumRows(this.airfoil.getNumberOfCtrlPoints());
       matrixSolver.setNumCols(this.airfoil.getNumberOfCtrlPoints());
       matrixSolver.setA(normalIntegWKuttaCond);
-      matrixSolver.setB(VinfArray);
+
+      if (this.linearSolver == LINEARSOLVER.MIXED_PRECISION) {
+         // references normalIntegWKuttaCond for the double residuals
+         this.mixedPrecisionFactorization = matrixSolver.doMixedPrecisionDecomposition();
+         this.luFactorization = null;
+         this.cacheInfluence(key, cached, geometricIntegral, null);
+         return;
+      }
+      this.mixedPrecisionFactorization = null;
+
+      if (cached != null && cached.getFactorization() != null) {
+         this.luFactorization = cached.getFactorization();
+         return;
+      }
 
       //matrixSolver.doGaussianEliminationNoPivot();
-      matrixSolver.doGaussianEliminationPivot();
+      //matrixSolver.doGaussianEliminationPivot();
 
-      this.vortexStrengths = matrixSolver.getX();
-      
-      //System.out.println("done with solver");
-      
-      this.solveForVtCpCnCaClCdCm();
-      
+      // the Kutta augmented normal integral only depends on the panel
+      // geometry, keep its factor so other right hand sides are O(n^2)
+      this.luFactorization = matrixSolver.doLUDecomposition();
+      this.cacheInfluence(key, cached, geometricIntegral, this.luFactorization);
    }
 
-   public void solveForTangentialVelocAndCp(double[] gamma) {
+   // stores a newly built integral, or a factor for an integral cached without one
+   private void cacheInfluence(GeometryKey key, InfluenceMatrixCache.Entry<LUFactorization> cached,
+         GeometricIntegral geometricIntegral, LUFactorization factor) {
+      if (key == null || (cached != null && factor == null)) {
+         return;
+      }
+      this.influenceCache.put(key, geometricIntegral, factor, factorBytes(factor));
 
-      for (int i = 0; i < this.airfoil.getNumberOfCtrlPoints(); i++) {
-         double rollingSum = 0;
-         for (int j = 0; j < this.airfoil.getNumberOfCtrlPoints(); j++) {
-            rollingSum += gamma[j]/(2*Math.PI*this.geometricIntegral.getNormalIntegralIndex(i, j));
-         }   
-         this.tangentialVeloc[i] = this.Vinfinity * Math.sin( this.beta[i] ) + rollingSum + (gamma[i]/2);
-         this.coeffOfPressure[i] = 1 - Math.pow( (this.tangentialVeloc[i] / this.Vinfinity) , 2);
+      InfluenceMatrixStore store = this.influenceCache.getBackingStore();
+      if (store != null) {
+         store.write(key, geometricIntegral,
+               (factor == null) ? null : factor.getPackedLU(),
+               (factor == null) ? null : factor.getPivot());
+      }
+   }
+
+   // a shape saved by an earlier run, promoted into the memory cache
+   private InfluenceMatrixCache.Entry<LUFactorization> loadStoredInfluence(GeometryKey key) {
+      InfluenceMatrixStore store = this.influenceCache.getBackingStore();
+      if (store == null) {
+         return null;
+      }
+      InfluenceMatrixStore.StoredInfluence stored = store.read(key);
+      if (stored == null) {
+         return null;
       }
 
+      LUFactorization factor = null;
+      if (stored.getFactorLU() != null) {
+         factor = LUFactorization.fromPacked(stored.getGeometricIntegral().getNumRows(),
+               stored.getFactorLU(), stored.getFactorPivot());
+      }
+      return this.influenceCache.put(key, stored.getGeometricIntegral(), factor, factorBytes(factor));
    }
-   
-   private void solveForVtCpCnCaClCdCm() {
 
-      this.Cn = new double[this.airfoil.getNumberOfCtrlPoints()];
-      this.Ca = new double[this.airfoil.getNumberOfCtrlPoints()];
-      this.tangentialVeloc = new double[this.airfoil.getNumberOfCtrlPoints()];
-      this.coeffOfPressure = new double[this.airfoil.getNumberOfCtrlPoints()];
-      
-      for (int i = 0; i < this.airfoil.getNumberOfCtrlPoints(); i++) {
-         double rollingSum = 0;
-         for (int j = 0; j < this.airfoil.getNumberOfCtrlPoints(); j++) {
-            rollingSum -= (this.vortexStrengths[j] / (2 * Math.PI)) * this.geometricIntegral.getTangentialIntegralIndex(i, j);
-         }   
-         this.tangentialVeloc[i] = this.Vinfinity * Math.sin( this.beta[i] ) + rollingSum + (this.vortexStrengths[i]/2);
-         this.coeffOfPressure[i] = 1 - Math.pow( (this.tangentialVeloc[i] / this.Vinfinity) , 2);
-         
-         
-         this.Cn[i] = -1 * this.coeffOfPressure[i] * this.s[i] * Math.sin(this.beta[i]);
-         this.Ca[i] = -1 * this.coeffOfPressure[i] * this.s[i] * Math.cos(this.beta[i]);
-        
-         
+   private static long factorBytes(LUFactorization factor) {
+      return (factor == null) ? 0 : (8L * factor.getSize() * factor.getSize()) + (4L * factor.getSize());
+   }
+
+   // gamma for one rhs with whichever backend prepareInfluenceMatrix() set up
+   private double[] solveInfluenceSystem(double[] rhs) {
+      if (this.linearSolver == LINEARSOLVER.DIRECT) {
+         if (this.woodburyFactorization != null) {
+            return this.woodburyFactorization.solve(rhs);
+         }
+         return this.luFactorization.solve(rhs);
       }
+      if (this.linearSolver == LINEARSOLVER.MIXED_PRECISION) {
+         return this.mixedPrecisionFactorization.solve(rhs);
+      }
+
+      // a guess of the wrong size is from another shape and is dropped
+      double[] x0 = (this.initialGuess != null && this.initialGuess.length == rhs.length) ? this.initialGuess : null;
+      this.initialGuess = null;
+      double[] gamma = this.gmresSolver.solve(this.influenceOperator, rhs, x0, this.preconditioner);
+      if (!this.gmresSolver.hasConverged()) {
+         throw new ArithmeticException("VortexPanelSolver: GMRES did not converge, relative residual "
+               + this.gmresSolver.getRelativeResidual() + " after " + this.gmresSolver.getIterations() + " iterations");
+      }
+      return gamma;
+   }
+
+   // n x k block of right hand sides, batched for the direct solver,
+   // one column at a time for the others
+   private double[][] solveInfluenceSystem(double[][] rhsBlock) {
+      if (this.linearSolver == LINEARSOLVER.DIRECT) {
+         if (this.woodburyFactorization != null) {
+            return this.woodburyFactorization.solve(rhsBlock);
+         }
+         return this.luFactorization.solve(rhsBlock);
+      }
+
+      int numRows = rhsBlock.length;
+      int numRhs = rhsBlock[0].length;
+      double[][] gammaBlock = new double[numRows][numRhs];
+      double[] rhs = new double[numRows];
+      for (int c = 0; c < numRhs; c++) {
+         for (int i = 0; i < numRows; i++) {
+            rhs[i] = rhsBlock[i][c];
+         }
+         double[] gamma = this.solveInfluenceSystem(rhs);
+         for (int i = 0; i < numRows; i++) {
+            gammaBlock[i][c] = gamma[i];
+         }
+      }
+      return gammaBlock;
+   }
+
+   /* * * * * * * * * * * * * * * * * * * * * * * * * * *
+    * Incremental geometry update
+    *
+    *    moving a few points only changes the rows (control
+    *    points) and columns (panels) of the panels touching
+    *    them. those are recomputed into a copy of the
+    *    integral, and the factor of the last fully factored
+    *    shape is reused through a Woodbury update of rank
+    *    about 2 per changed panel instead of a new O(n^3)
+    *    factor
+    *
+    *    call after moving the airfoil's points and
+    *    regenerating its control points, then solve as
+    *    usual. the panels are compared against the factored
+    *    shape, so updates chain and a moved point missing
+    *    from changedPointIndices is still picked up
+    *
+    *    falls back to a full assembly and factor when the
+    *    update rank passes maxUpdateFraction of the panel
+    *    count, the panel count changed, the solver is not
+    *    DIRECT or the update is singular. true if the
+    *    Woodbury update was used
+    * * * * * * * * * * * * * * * * * * * * * * * * * * */
+   public boolean updateGeometry(int[] changedPointIndices) {
+      PanelSet panels = this.airfoil.getPanelSet();
+      int numPanels = panels.getNumberOfPanels();
+      for (int p : changedPointIndices) {
+         if (p < 0 || p >= panels.getNumberOfPoints()) {
+            throw new IllegalArgumentException("VortexPanelSolver: no airfoil point " + p);
+         }
+      }
+
+      PanelSet basePanels = this.updateBasePanels;
+      GeometricIntegral baseIntegral = this.updateBaseIntegral;
+      if (this.woodburyFactorization == null) {
+         basePanels = this.panels;
+         baseIntegral = this.geometricIntegral;
+      }
+      if (this.linearSolver != LINEARSOLVER.DIRECT || this.luFactorization == null || baseIntegral == null
+            || basePanels == null || basePanels.getNumberOfPanels() != numPanels) {
+         this.clearGeometryUpdate();
+         this.prepareInfluenceMatrix();
+         return false;
+      }
+
+      // panels touching a listed point, or moved in any way since the factor
+      boolean[] changed = new boolean[numPanels];
+      for (int p : changedPointIndices) {
+         if (p > 0) {
+            changed[p - 1] = true;
+         }
+         if (p < numPanels) {
+            changed[p] = true;
+         }
+      }
+      int numChanged = 0;
+      for (int j = 0; j < numPanels; j++) {
+         changed[j] = changed[j] || !samePanel(basePanels, panels, j);
+         if (changed[j]) {
+            numChanged++;
+         }
+      }
+      int kuttaRow = numPanels - 1;
+      // a row and a column per panel, the Kutta row never changes
+      int rank = 2 * numChanged - (changed[kuttaRow] ? 1 : 0);
+      if (rank > this.maxUpdateFraction * numPanels) {
+         this.clearGeometryUpdate();
+         this.prepareInfluenceMatrix();
+         return false;
+      }
+
+      GeometricIntegral updated = this.patchIntegral(panels, baseIntegral, changed);
+      double[][] baseNormal = baseIntegral.getNormalIntegral();
+      double[][] normal = updated.getNormalIntegral();
+
+      //    A = A_base + U V^T, changed rows as e_i (row delta)^T,
+      //    changed columns outside the changed rows as (column delta) e_j^T
+      double[][] u = new double[rank][];
+      double[][] v = new double[rank][];
+      int l = 0;
+      for (int i = 0; i < numPanels; i++) {
+         if (changed[i] && i != kuttaRow) {
+            u[l] = new double[numPanels];
+            u[l][i] = 1;
+            v[l] = new double[numPanels];
+            for (int j = 0; j < numPanels; j++) {
+               v[l][j] = normal[i][j] - baseNormal[i][j];
+            }
+            l++;
+         }
+      }
+      for (int j = 0; j < numPanels; j++) {
+         if (changed[j]) {
+            u[l] = new double[numPanels];
+            for (int i = 0; i < numPanels; i++) {
+               if (!changed[i]) {
+                  u[l][i] = normal[i][j] - baseNormal[i][j];
+               }
+            }
+            v[l] = new double[numPanels];
+            v[l][j] = 1;
+            l++;
+         }
+      }
+
+      WoodburyFactorization woodbury;
+      try {
+         LUFactorization baseFactor = (this.woodburyFactorization == null)
+               ? this.luFactorization : this.woodburyFactorization.getBase();
+         woodbury = new WoodburyFactorization(baseFactor, u, v);
+      } catch (ArithmeticException e) {
+         this.clearGeometryUpdate();
+         this.prepareInfluenceMatrix();
+         return false;
+      }
+
+      this.updateBasePanels = basePanels;
+      this.updateBaseIntegral = baseIntegral;
+      this.woodburyFactorization = woodbury;
+      this.updatedPanels = panels;
+      this.panels = panels;
+      this.s = panels.getS();
+      this.phi = panels.getPhi();
+      this.geometricIntegral = updated;
+      return true;
+   }
+
+   // copy of base with the rows and columns of the changed panels recomputed,
+   //    the Kutta row of the normal integral is kept as it is
+   private GeometricIntegral patchIntegral(PanelSet panels, GeometricIntegral base, boolean[] changed) {
+      int numPanels = changed.length;
+      int kuttaRow = numPanels - 1;
+      double[][] baseTangential = base.getTangentialIntegral();
+      double[][] normal = new double[numPanels][];
+      double[][] tangential = (baseTangential == null) ? null : new double[numPanels][];
+      for (int i = 0; i < numPanels; i++) {
+         normal[i] = base.getNormalIntegral()[i].clone();
+         if (tangential != null) {
+            tangential[i] = baseTangential[i].clone();
+         }
+      }
+
+      GeometricIntegralAssembler assembler = new GeometricIntegralAssembler(panels);
+      double[] cell = new double[2];
+      for (int i = 0; i < numPanels; i++) {
+         if (changed[i]) {
+            assembler.calculateRow(i, (i == kuttaRow) ? null : normal[i],
+                  (tangential == null) ? null : tangential[i]);
+            continue;
+         }
+         for (int j = 0; j < numPanels; j++) {
+            if (changed[j]) {
+               assembler.calculateCell(i, j, cell);
+               if (i != kuttaRow) {
+                  normal[i][j] = cell[0];
+               }
+               if (tangential != null) {
+                  tangential[i][j] = cell[1];
+               }
+            }
+         }
+      }
+      return new GeometricIntegral(numPanels, numPanels, normal, tangential);
+   }
+
+   // panel j has the same end and control points in both
+   private static boolean samePanel(PanelSet a, PanelSet b, int j) {
+      return a.getX()[j] == b.getX()[j] && a.getY()[j] == b.getY()[j]
+            && a.getX()[j + 1] == b.getX()[j + 1] && a.getY()[j + 1] == b.getY()[j + 1]
+            && a.getXc()[j] == b.getXc()[j] && a.getYc()[j] == b.getYc()[j];
+   }
+
+   private void clearGeometryUpdate() {
+      this.woodburyFactorization = null;
+      this.updatedPanels = null;
+      this.updateBasePanels = null;
+      this.updateBaseIntegral = null;
+   }
+
+   // needs prepareInfluenceMatrix() to have been run on this geometry
+   private void solveAtAlpha(double alphaRad) {
+
+      double[] beta = this.calculateBetas(alphaRad);
+
+      double [] VinfArray = this.calculateVinfinities(beta);
+
+      //satisfy Kutta Condition in Vinf array
+      VinfArray[this.airfoil.getNumberOfCtrlPoints() - 1] = 0;
+
+      this.vortexStrengths = this.solveInfluenceSystem(VinfArray);
       
-      MatrixSolver ms = new MatrixSolver();
-      
-      double[] cnCos = ms.doMatrixMultiplyByConst(this.airfoil.getNumberOfCtrlPoints(), this.Cn, Math.cos(this.airfoil.getangleOfAttackRad()) );
-      double[] caSin = ms.doMatrixMultiplyByConst(this.airfoil.getNumberOfCtrlPoints(), this.Ca, Math.sin(this.airfoil.getangleOfAttackRad()) );
-      
-      double s1 = ms.doSum(this.airfoil.getNumberOfCtrlPoints(), cnCos);
-      double s2 = ms.doSum(this.airfoil.getNumberOfCtrlPoints(), caSin);
-      
-      this.Cl = s1 - s2;
-      
-      double[] cnSin = ms.doMatrixMultiplyByConst(this.airfoil.getNumberOfCtrlPoints(), this.Cn, Math.sin(this.airfoil.getangleOfAttackRad()) );
-      double[] caCos = ms.doMatrixMultiplyByConst(this.airfoil.getNumberOfCtrlPoints(), this.Ca, Math.cos(this.airfoil.getangleOfAttackRad()) );
-      
-      double s6 = ms.doSum(this.airfoil.getNumberOfCtrlPoints(), cnSin);
-      double s7 = ms.doSum(this.airfoil.getNumberOfCtrlPoints(), caCos);
-      
-      this.Cd = s6 + s7;
-      
-      
-      double[] offsetVal = ms.doMatrixAdditionByConst(this.airfoil.getNumberOfCtrlPoints(),this.airfoil.getAllCtrlPointX(), -0.25);
-      double[] s3 = ms.doMatrixMultiply( this.airfoil.getNumberOfCtrlPoints() , offsetVal, this.coeffOfPressure);
-      double[] s4 = ms.doMatrixMultiply( this.airfoil.getNumberOfCtrlPoints() , s3, this.s);
-      double[] s5 = ms.doMatrixMultiplyCosOnMat2(this.airfoil.getNumberOfCtrlPoints(), s4, this.phi);
-      
-      this.Cm = ms.doSum(this.airfoil.getNumberOfCtrlPoints(), s5);
-      
+      //System.out.println("done with solver");
       
+      this.finishSolve(false);
       
    }
 
-   
-   
-   // Solver helper functions
-   private GeometricIntegral calculateGeometricIntegral(double[] s, double[] phi) {
-
-      /* Calculation Convention
-       *    i = index of control point
-       *    j = loop over all panels != i, if j==i call it 0
-       *    
-       *    Components of solved integral
-       *    A  = - (x_i - X_j) cos(phi_j) - (y_i - Y_j) sin(phi_j)
-       *    B  = (x_i - X_j)^2 - (y_i - Y_j)^2
-       *    Cn = - cos(phi_i - phi_j)
-       *    Ct = sin (phi_j - phi_i)
-       *    Dn = (x_i - X_j) cos(phi_i) + (y_i - Y_j) sin(phi_j)
-       *    Dt = (x_i - X_j) sin(phi_i) - (y_i - Y_j) cos(phi_i)
-       *    E  = (B - A^2) ^ 0.5
-       *    
-       *    geometricIntegral = (C_n,t / 2) * ( ln( s_j^2 + 2*A*s_j + B / B) + ((D_n,t - A*C) / E)(atan( (s_j+A) /E ) - atan(A/E) ) )  
-       *    
-       * * * * * * * * */
-      GeometricIntegral geomInteg = new GeometricIntegral(this.airfoil.getNumberOfCtrlPoints());
+   /* * * * * * * * * * * * * * * * * * * * * * * * * * *
+    * Superposition mode
+    * 
+    *    the system is linear in the freestream, and
+    *    cos(beta) = sin(phi)cos(alpha) - cos(phi)sin(alpha)
+    *    so solving once for alpha = 0 and once for alpha = 90
+    *    gives, for any alpha,
+    *       gamma = cos(alpha) * gamma_0 + sin(alpha) * gamma_90
+    *    tangential velocity superposes the same way, leaving
+    *    only O(n) work per alpha. the two base Vt sweeps are
+    *    O(n^2) and are put off until a distribution is needed
+    * * * * * * * * * * * * * * * * * * * * * * * * * * */
+   private void prepareBaseSolutions() {
+
+      // a new PanelSet means the shape changed
+      if ( this.baseGamma0 != null && this.basePanels == this.airfoil.getPanelSet() 
+            && this.baseVinfinity == this.Vinfinity ) {
+         return;
+      }
 
-      for (int i = 0; i < this.airfoil.getNumberOfCtrlPoints(); i++) {
+      this.prepareInfluenceMatrix();
+
+      PanelSet panels = this.airfoil.getPanelSet();
+      double[] sinPhi = panels.getSinPhi();
+      double[] cosPhi = panels.getCosPhi();
+      int numPanels = this.airfoil.getNumberOfCtrlPoints();
+      // column 0 is alpha = 0, column 1 alpha = 90, both solved in one pass
+      double[][] rhsBlock = new double[numPanels][2];
 
-         double[] controlPt_i = this.airfoil.getCtrlCoords(i);
+      for (int i = 0; i < numPanels; i++) {
+         rhsBlock[i][0] = 2.0 * Math.PI * this.Vinfinity * sinPhi[i];
+         rhsBlock[i][1] = -2.0 * Math.PI * this.Vinfinity * cosPhi[i];
+      }
 
-         for (int j = 0; j < this.airfoil.getNumberOfCtrlPoints(); j++) {
+      //satisfy Kutta Condition
+      rhsBlock[numPanels - 1][0] = 0;
+      rhsBlock[numPanels - 1][1] = 0;
 
-            if (i == j) {
-               // is zero
-               geomInteg.setNormalIntegralIndex(i,j, 0);
-               geomInteg.setTangentialIntegralIndex(i,j, 0);
+      double[][] gammaBlock = this.solveInfluenceSystem(rhsBlock);
+      this.baseGamma0 = new double[numPanels];
+      this.baseGamma90 = new double[numPanels];
+      for (int i = 0; i < numPanels; i++) {
+         this.baseGamma0[i] = gammaBlock[i][0];
+         this.baseGamma90[i] = gammaBlock[i][1];
+      }
+      this.baseVt0 = null;
+      this.baseVt90 = null;
+      this.baseGeometricIntegral = this.geometricIntegral;
+      this.baseInfluenceOperator = this.influenceOperator;
+
+      this.basePanels = panels;
+      this.baseVinfinity = this.Vinfinity;
+   }
+
+   // tangential velocity of the two base solutions, needs prepareBaseSolutions()
+   private void prepareBaseTangentialVeloc() {
+      if (this.baseVt0 != null) {
+         return;
+      }
+
+      double[] sinPhi = this.basePanels.getSinPhi();
+      double[] cosPhi = this.basePanels.getCosPhi();
+      int numPanels = this.baseGamma0.length;
+
+      // V * sin(beta) = V * ( cos(phi)cos(alpha) + sin(phi)sin(alpha) )
+      this.baseVt0 = new double[numPanels];
+      this.baseVt90 = new double[numPanels];
+      if (this.baseGeometricIntegral == null || this.baseGeometricIntegral.getTangentialIntegral() == null) {
+         double[][] x = new double[2][numPanels];
+         for (int j = 0; j < numPanels; j++) {
+            x[0][j] = this.baseGamma0[j] / (2 * Math.PI);
+            x[1][j] = this.baseGamma90[j] / (2 * Math.PI);
+         }
+         double[][] vtSum = { this.baseVt0, this.baseVt90 };
+         this.multiplyTangential(this.basePanels, this.baseInfluenceOperator, x, vtSum);
+         for (int i = 0; i < numPanels; i++) {
+            this.baseVt0[i] = this.Vinfinity * cosPhi[i] + this.baseVt0[i] + (this.baseGamma0[i] / 2);
+            this.baseVt90[i] = this.Vinfinity * sinPhi[i] + this.baseVt90[i] + (this.baseGamma90[i] / 2);
+         }
+         return;
+      }
+      for (int i = 0; i < numPanels; i++) {
+         double rollingSum0 = 0;
+         double rollingSum90 = 0;
+         for (int j = 0; j < numPanels; j++) {
+            double tang = this.baseGeometricIntegral.getTangentialIntegralIndex(i, j);
+            rollingSum0 -= (this.baseGamma0[j] / (2 * Math.PI)) * tang;
+            rollingSum90 -= (this.baseGamma90[j] / (2 * Math.PI)) * tang;
+         }
+         this.baseVt0[i] = this.Vinfinity * cosPhi[i] + rollingSum0 + (this.baseGamma0[i] / 2);
+         this.baseVt90[i] = this.Vinfinity * sinPhi[i] + rollingSum90 + (this.baseGamma90[i] / 2);
+      }
+   }
 
-            } else {
+   private void solveSuperposedAlpha(double alphaRad) {
 
-               double[] geometryPt_j = this.airfoil.getPointCoords(j);
+      this.calculateBetas(alphaRad);
 
-               double xi_minus_Xj = controlPt_i[0] - geometryPt_j[0];
-               double yi_minus_Yj = controlPt_i[1] - geometryPt_j[1];
+      int numPanels = this.airfoil.getNumberOfCtrlPoints();
+      double cosAlpha = Math.cos(alphaRad);
+      double sinAlpha = Math.sin(alphaRad);
 
-               double A = (-1*xi_minus_Xj * Math.cos(phi[j])) - (yi_minus_Yj * Math.sin(phi[j]));
-               double B = Math.pow( xi_minus_Xj , 2) + Math.pow( yi_minus_Yj , 2);               
-               double Cn = -1 * Math.cos( phi[i] - phi[j] );                            
-               double Dn = xi_minus_Xj * Math.cos(phi[i]) + yi_minus_Yj * Math.sin(phi[i]);
-               double Ct = Math.sin( phi[j] - phi[i] );  
-               double Dt = (xi_minus_Xj * Math.sin(phi[i])) - (yi_minus_Yj * Math.cos(phi[i]));               
-               double E = Math.sqrt( (B - Math.pow(A, 2)) );
+      this.vortexStrengths = reuse(this.vortexStrengths, numPanels);
+      for (int i = 0; i < numPanels; i++) {
+         this.vortexStrengths[i] = cosAlpha * this.baseGamma0[i] + sinAlpha * this.baseGamma90[i];
+      }
 
-               if ( Double.isNaN(E) ) {
-                  E = 0;
-               }
+      this.finishSolve(true);
+   }
 
+   // gamma and beta are set for the solved alpha, the O(n) circulation
+   // coefficients are made now and everything else on demand
+   private void finishSolve(boolean fromBaseSolutions) {
+      this.calculateCirculationCoefficients();
+      this.distributionsPending = true;
+      this.pendingFromBaseSolutions = fromBaseSolutions;
+   }
 
-               double leftHalf =  Math.log( ( (Math.pow(s[j], 2) + 2*A*s[j] + B) / B) );          
+   // builds Vt, Cp, Cn, Ca and the pressure coefficients if the last
+   // solve has not had them built yet
+   private void ensureDistributions() {
+      if (!this.distributionsPending) {
+         return;
+      }
+      this.distributionsPending = false;
 
-               double rightHalf_n = ((Dn - A*Cn)/E) * ( Math.atan2((s[j] + A), E) - Math.atan2(A, E) );                              
-               double rightHalf_t = ((Dt - A*Ct)/E) * ( Math.atan2((s[j] + A), E) - Math.atan2(A, E) );               
+      if (!this.pendingFromBaseSolutions) {
+         this.solveForVtCpCnCaClCdCm();
+         return;
+      }
 
-               double normVal = ((Cn/2) *  leftHalf) + rightHalf_n  ;
-               double tanVal =  ((Ct/2) *  leftHalf) + rightHalf_t  ;
+      this.prepareBaseTangentialVeloc();
+      int numPanels = this.vortexStrengths.length;
+      double cosAlpha = Math.cos(this.solvedAlphaRad);
+      double sinAlpha = Math.sin(this.solvedAlphaRad);
+      this.tangentialVeloc = reuse(this.tangentialVeloc, numPanels);
+      for (int i = 0; i < numPanels; i++) {
+         this.tangentialVeloc[i] = cosAlpha * this.baseVt0[i] + sinAlpha * this.baseVt90[i];
+      }
+      this.solveForCpCnCaClCdCm();
+   }
 
+   /* * * * * * * * * * * * * * * * * * * * * * * * * * *
+    * Circulation coefficients, O(n) from gamma alone
+    *
+    *    Kutta Joukowski, chord 1
+    *       Cl = 2 Gamma / V,  Gamma = sum gamma_j s_j
+    *    each panel's share of the lift acts at its
+    *    control point, the quarter chord moment arm being
+    *    the control point's distance along the freestream
+    *       Cm = -(2 / V) sum gamma_j s_j ( (xc_j - .25) cos(alpha) + yc_j sin(alpha) )
+    * * * * * * * * * * * * * * * * * * * * * * * * * * */
+   private void calculateCirculationCoefficients() {
+      double[] xc = this.panels.getXc();
+      double[] yc = this.panels.getYc();
+      double cosAlpha = Math.cos(this.solvedAlphaRad);
+      double sinAlpha = Math.sin(this.solvedAlphaRad);
+
+      double gammaSum = 0;
+      double momentSum = 0;
+      for (int i = 0; i < this.vortexStrengths.length; i++) {
+         double panelGamma = this.vortexStrengths[i] * this.s[i];
+         gammaSum += panelGamma;
+         momentSum += panelGamma * (((xc[i] - 0.25) * cosAlpha) + (yc[i] * sinAlpha));
+      }
+      this.circulation = gammaSum;
+      this.circulationCm = -2 * momentSum / this.Vinfinity;
+   }
 
-               if ( Double.isNaN(normVal) ) {
-                  normVal = 0;
-               }
-               
-               if ( Double.isNaN(tanVal) ) {
-                  tanVal = 0;
-               }
+   // call after changing the airfoil points in place
+   public void invalidateBaseSolutions() {
+      this.baseGamma0 = null;
+      this.baseGamma90 = null;
+      this.baseVt0 = null;
+      this.baseVt90 = null;
+      this.baseGeometricIntegral = null;
+      this.baseInfluenceOperator = null;
+      this.basePanels = null;
+   }
 
-               geomInteg.setNormalIntegralIndex(i,j, -1.0*normVal);
-               geomInteg.setTangentialIntegralIndex(i,j, tanVal);
-            }
+   // Vt, Cp and the coefficients for gamma at the last solved alpha,
+   // through the same path as a solve with any linear solver
+   public void solveForTangentialVelocAndCp(double[] gamma) {
+      if (gamma.length != this.airfoil.getNumberOfCtrlPoints()) {
+         throw new IllegalArgumentException("VortexPanelSolver: " + gamma.length + " strengths for "
+               + this.airfoil.getNumberOfCtrlPoints() + " panels");
+      }
+      // the superposed path refills vortexStrengths in place later
+      this.vortexStrengths = gamma.clone();
+      this.finishSolve(false);
+      this.ensureDistributions();
+   }
+   
+   private void solveForVtCpCnCaClCdCm() {
 
-            //System.out.println("Norm: " + geomInteg.getNormalIntegralIndex(i, j) + " | Tang: " + geomInteg.getTangentialIntegralIndex(i, j));
+      int numPanels = this.airfoil.getNumberOfCtrlPoints();
+      this.tangentialVeloc = reuse(this.tangentialVeloc, numPanels);
+      this.gammaOver2Pi = reuse(this.gammaOver2Pi, numPanels);
+      for (int j = 0; j < numPanels; j++) {
+         this.gammaOver2Pi[j] = this.vortexStrengths[j] / (2 * Math.PI);
+      }
 
+      double[][] tangentialIntegral = (this.geometricIntegral == null) ? null : this.geometricIntegral.getTangentialIntegral();
+      if (tangentialIntegral == null) {
+         // low memory integral or tree code, no tangential matrix to sum over
+         double[][] vtSum = { this.tangentialVeloc };
+         this.multiplyTangential(this.panels, this.influenceOperator,
+               new double[][] { this.gammaOver2Pi }, vtSum);
+         for (int i = 0; i < numPanels; i++) {
+            this.tangentialVeloc[i] = this.Vinfinity * Math.sin( this.beta[i] ) + this.tangentialVeloc[i] + (this.vortexStrengths[i]/2);
+         }
+      } else {
+         for (int i = 0; i < numPanels; i++) {
+            double[] tangRow = tangentialIntegral[i];
+            double rollingSum = 0;
+            for (int j = 0; j < numPanels; j++) {
+               rollingSum -= this.gammaOver2Pi[j] * tangRow[j];
+            }   
+            this.tangentialVeloc[i] = this.Vinfinity * Math.sin( this.beta[i] ) + rollingSum + (this.vortexStrengths[i]/2);
          }
-         //double q = 0;
       }
 
+      this.solveForCpCnCaClCdCm();
+   }
 
-      return geomInteg;
+   // needs tangentialVeloc and beta for the current alpha
+   //    one pass builds Cp, Cn, Ca and the Cl, Cd, Cm sums
+   //    together, the output arrays are reused between calls
+   //    when the panel count is unchanged
+   private void solveForCpCnCaClCdCm() {
+
+      int numPanels = this.airfoil.getNumberOfCtrlPoints();
+      this.Cn = reuse(this.Cn, numPanels);
+      this.Ca = reuse(this.Ca, numPanels);
+      this.coeffOfPressure = reuse(this.coeffOfPressure, numPanels);
+
+      double cosAlpha = Math.cos(this.solvedAlphaRad);
+      double sinAlpha = Math.sin(this.solvedAlphaRad);
+      double[] xc = this.panels.getXc();
+      double[] cosPhi = this.panels.getCosPhi();
+
+      double cnCosSum = 0;
+      double caSinSum = 0;
+      double cnSinSum = 0;
+      double caCosSum = 0;
+      double cmSum = 0;
+      for (int i = 0; i < numPanels; i++) {
+         double vRatio = this.tangentialVeloc[i] / this.Vinfinity;
+         double cp = 1 - (vRatio * vRatio);
+         double cn = -1 * cp * this.s[i] * Math.sin(this.beta[i]);
+         double ca = -1 * cp * this.s[i] * Math.cos(this.beta[i]);
+         this.coeffOfPressure[i] = cp;
+         this.Cn[i] = cn;
+         this.Ca[i] = ca;
+
+         cnCosSum += cn * cosAlpha;
+         caSinSum += ca * sinAlpha;
+         cnSinSum += cn * sinAlpha;
+         caCosSum += ca * cosAlpha;
+         // moment about the quarter chord
+         cmSum += (xc[i] - 0.25) * cp * this.s[i] * cosPhi[i];
+      }
+
+      this.Cl = cnCosSum - caSinSum;
+      this.Cd = cnSinSum + caCosSum;
+      this.Cm = cmSum;
+   }
+
+   // y[k] = - tangential integral * x[k] without a stored tangential matrix,
+   //    by a matrix free operator or rows rebuilt one at a time
+   private void multiplyTangential(PanelSet panels, LinearOperator operator, double[][] x, double[][] y) {
+      if (operator instanceof InfluenceOperator) {
+         InfluenceOperator influence = (InfluenceOperator) operator;
+         for (int k = 0; k < x.length; k++) {
+            influence.multiplyTangential(x[k], y[k]);
+         }
+         return;
+      }
+      new GeometricIntegralAssembler(panels).multiplyTangential(x, y, this.parallelAssemblyThreshold);
+   }
+
+   // buf if it already has length n, otherwise a new array
+   private static double[] reuse(double[] buf, int n) {
+      return (buf != null && buf.length == n) ? buf : new double[n];
+   }
+
+   
+   
+   // Solver helper functions
+   private GeometricIntegral calculateGeometricIntegral(PanelSet panels) {
+      // rows go parallel above the threshold, results are the same either way
+      GeometricIntegralAssembler assembler = new GeometricIntegralAssembler(panels);
+      return assembler.assemble(this.parallelAssemblyThreshold, !this.lowMemory);
+   }
+
+   //    beta, the angle the panel normal makes with freestream veloc
+   private double[] calculateBetas(double alphaRad) {
+      double[] beta = reuse(this.beta, this.airfoil.getNumberOfCtrlPoints());
+
+      for (int i = 0; i < this.airfoil.getNumberOfCtrlPoints(); i++) {
+         beta[i] = this.phi[i] + ( Math.PI / 2 ) - alphaRad;         
+
+         if (beta[i] > ( 2 * Math.PI ) ) {
+            beta[i] = beta[i] - (2 * Math.PI);
+         }
+      }
+      this.beta = beta;
+      this.solvedAlphaRad = alphaRad;
+
+      return beta;
    }
    private double[] calculateVinfinities(double[] beta) {
       double[] VinfArray = new double[this.airfoil.getNumberOfCtrlPoints()];
@@ -345,38 +975,157 @@ public class VortexPanelSolver {
    public void setVinfinity(double vinfinity) {
       Vinfinity = vinfinity;
    }
+   public boolean isSuperpositionMode() {
+      return superpositionMode;
+   }
+   public void setSuperpositionMode(boolean superpositionMode) {
+      this.superpositionMode = superpositionMode;
+   }
+   public boolean isCoefficientsOnly() {
+      return coefficientsOnly;
+   }
+   // Cl from the circulation only, Cd and Cm stay pressure integrated and
+   // build Vt and Cp on first use, see getCirculationCm() for the other Cm
+   public void setCoefficientsOnly(boolean coefficientsOnly) {
+      this.coefficientsOnly = coefficientsOnly;
+   }
+
+   public boolean isLowMemory() {
+      return lowMemory;
+   }
+
+   // takes effect for shapes assembled after this, a cached shape is used
+   // as cached. Vt and Cp cost an extra assembly's worth of trig per alpha
+   public void setLowMemory(boolean lowMemory) {
+      this.lowMemory = lowMemory;
+   }
+   // sum of gamma_j s_j for the last solve
+   public double getCirculation() {
+      return circulation;
+   }
+   // quarter chord Cm from the circulation, a few percent off the pressure Cm
+   public double getCirculationCm() {
+      return circulationCm;
+   }
+   public static InfluenceMatrixCache<LUFactorization> getSharedInfluenceCache() {
+      return SHARED_INFLUENCE_CACHE;
+   }
+   public InfluenceMatrixCache<LUFactorization> getInfluenceCache() {
+      return influenceCache;
+   }
+   // null turns caching off, every solve assembles and factors from scratch
+   public void setInfluenceCache(InfluenceMatrixCache<LUFactorization> influenceCache) {
+      this.influenceCache = influenceCache;
+   }
+   public LINEARSOLVER getLinearSolver() {
+      return linearSolver;
+   }
+   public void setLinearSolver(LINEARSOLVER linearSolver) {
+      this.linearSolver = linearSolver;
+   }
+   public GMRESSolver getGMRESSolver() {
+      return gmresSolver;
+   }
+   // restart length, tolerance and iteration cap for LINEARSOLVER.GMRES
+   public void setGMRESSolver(GMRESSolver gmresSolver) {
+      this.gmresSolver = gmresSolver;
+   }
+   public int getPreconditionerBlockSize() {
+      return preconditionerBlockSize;
+   }
+   // panels per block Jacobi block for LINEARSOLVER.GMRES, TREECODE and HMATRIX
+   public void setPreconditionerBlockSize(int preconditionerBlockSize) {
+      this.preconditionerBlockSize = preconditionerBlockSize;
+   }
+   public double getTreeCodeTolerance() {
+      return treeCodeTolerance;
+   }
+   // relative error of the far field series for LINEARSOLVER.TREECODE
+   public void setTreeCodeTolerance(double treeCodeTolerance) {
+      this.treeCodeTolerance = treeCodeTolerance;
+   }
+   public double getHMatrixTolerance() {
+      return hMatrixTolerance;
+   }
+   // relative ACA error per low rank block for LINEARSOLVER.HMATRIX
+   public void setHMatrixTolerance(double hMatrixTolerance) {
+      this.hMatrixTolerance = hMatrixTolerance;
+   }
+   public double getMaxUpdateFraction() {
+      return maxUpdateFraction;
+   }
+   // Woodbury rank, as a fraction of the panel count, past which
+   // updateGeometry() assembles and factors from scratch instead
+   public void setMaxUpdateFraction(double maxUpdateFraction) {
+      this.maxUpdateFraction = maxUpdateFraction;
+   }
+   // set while solving a shape reached through updateGeometry(), null otherwise
+   public WoodburyFactorization getWoodburyFactorization() {
+      return woodburyFactorization;
+   }
+   public double[] getInitialGuess() {
+      return initialGuess;
+   }
+
+   public void setInitialGuess(double[] initialGuess) {
+      this.initialGuess = initialGuess;
+   }
+
+   public LinearOperator getInfluenceOperator() {
+      return influenceOperator;
+   }
+   public int getParallelAssemblyThreshold() {
+      return parallelAssemblyThreshold;
+   }
+   // panel count at which the geometric integral rows are built in parallel
+   public void setParallelAssemblyThreshold(int parallelAssemblyThreshold) {
+      this.parallelAssemblyThreshold = parallelAssemblyThreshold;
+   }
    public double getEpsilon() {
       return epsilon;
    }
+   // the distribution getters and setters copy, the solver refills its
+   // own arrays in place on the next solve of the same panel count
    public double[] getVortexStrengths() {
-      return vortexStrengths;
+      return (vortexStrengths == null) ? null : vortexStrengths.clone();
    }
    public void setVortexStrengths(double[] vortexStrengths) {
-      this.vortexStrengths = vortexStrengths;
+      this.vortexStrengths = (vortexStrengths == null) ? null : vortexStrengths.clone();
    }
+   // may be shared through the influence cache, do not modify.
+   // null for LINEARSOLVER.TREECODE and HMATRIX
    public GeometricIntegral getGeometricIntegral() {
       return geometricIntegral;
    }
    public void setGeometricIntegral(GeometricIntegral geometricIntegral) {
       this.geometricIntegral = geometricIntegral;
    }
+   public LUFactorization getLUFactorization() {
+      return luFactorization;
+   }
+   // set up by LINEARSOLVER.MIXED_PRECISION, refinement steps of the last solve live here
+   public MixedPrecisionLU getMixedPrecisionFactorization() {
+      return mixedPrecisionFactorization;
+   }
    public double[] getTangentialVeloc() {
-      return tangentialVeloc;
+      this.ensureDistributions();
+      return (tangentialVeloc == null) ? null : tangentialVeloc.clone();
    }
    public void setTangentialVeloc(double[] tangentialVeloc) {
-      this.tangentialVeloc = tangentialVeloc;
+      this.tangentialVeloc = (tangentialVeloc == null) ? null : tangentialVeloc.clone();
    }
    public double[] getCoeffOfPressure() {
-      return coeffOfPressure;
+      this.ensureDistributions();
+      return (coeffOfPressure == null) ? null : coeffOfPressure.clone();
    }
    public void setCoeffOfPressure(double[] coeffOfPressure) {
-      this.coeffOfPressure = coeffOfPressure;
+      this.coeffOfPressure = (coeffOfPressure == null) ? null : coeffOfPressure.clone();
    }
    public double[] getBeta() {
-      return beta;
+      return (beta == null) ? null : beta.clone();
    }
    public void setBeta(double[] beta) {
-      this.beta = beta;
+      this.beta = (beta == null) ? null : beta.clone();
    }
    
    public double[] getS() {
@@ -386,13 +1135,19 @@ public class VortexPanelSolver {
       this.s = s;
    }
    
+   // pressure integrated, or Kutta Joukowski in coefficients only mode
    public double getCl() {
+      if (this.coefficientsOnly) {
+         return 2 * this.circulation / this.Vinfinity;
+      }
+      this.ensureDistributions();
       return Cl;
    }
    public void setCl(double cl) {
       Cl = cl;
    }
    public double getCm() {
+      this.ensureDistributions();
       return Cm;
    }
    public void setCm(double cm) {
@@ -405,18 +1160,21 @@ public class VortexPanelSolver {
       this.phi = phi;
    }
    public double[] getCn() {
-      return Cn;
+      this.ensureDistributions();
+      return (Cn == null) ? null : Cn.clone();
    }
    public void setCn(double[] cn) {
-      Cn = cn;
+      Cn = (cn == null) ? null : cn.clone();
    }
    public double[] getCa() {
-      return Ca;
+      this.ensureDistributions();
+      return (Ca == null) ? null : Ca.clone();
    }
    public void setCa(double[] ca) {
-      Ca = ca;
+      Ca = (ca == null) ? null : ca.clone();
    }
    public double getCd() {
+      this.ensureDistributions();
       return Cd;
    }
    public void setCd(double cd) {
@@ -0,0 +1,136 @@
+package solvers;
+
+/* * * * * * * * * * * * * * *
+ *  Solves with A + U V^T given a factor of A
+ *
+ * for a rank k change to a factored matrix the
+ * Sherman Morrison Woodbury identity
+ *
+ *    (A + U V^T)^-1 = A^-1 - Z (I + V^T Z)^-1 V^T A^-1
+ *    Z = A^-1 U
+ *
+ * needs k solves with the old factor and one k x k
+ * factor, O(k n^2 + k^3) against O(n^3) for a new
+ * factor. every solve after that is one old solve
+ * plus O(k n)
+ *
+ * u[l] and v[l] are the l-th columns of U and V.
+ * if I + V^T Z is singular the update can not be
+ * done this way and the constructor throws an
+ * ArithmeticException, like a singular LU
+ * * * * * * * * * * * * * * */
+public class WoodburyFactorization {
+
+   private final LUFactorization base;
+   private final int size;
+   private final int rank;
+   private final double[][] v;          // rank x size
+   private final double[][] z;          // size x rank, A^-1 U
+   private final LUFactorization capacitance;
+
+   public WoodburyFactorization(LUFactorization base, double[][] u, double[][] v) {
+      if (u.length != v.length) {
+         throw new IllegalArgumentException("WoodburyFactorization: U has " + u.length + " columns and V " + v.length);
+      }
+      this.base = base;
+      this.size = base.getSize();
+      this.rank = u.length;
+      this.v = v;
+
+      double[][] uBlock = new double[this.size][this.rank];
+      for (int l = 0; l < this.rank; l++) {
+         for (int i = 0; i < this.size; i++) {
+            uBlock[i][l] = u[l][i];
+         }
+      }
+      this.z = (this.rank == 0) ? uBlock : base.solve(uBlock);
+
+      // I + V^T Z
+      double[][] c = new double[this.rank][this.rank];
+      for (int l = 0; l < this.rank; l++) {
+         double[] vl = v[l];
+         for (int m = 0; m < this.rank; m++) {
+            double rollingSum = 0;
+            for (int i = 0; i < this.size; i++) {
+               rollingSum += vl[i] * this.z[i][m];
+            }
+            c[l][m] = rollingSum + ((l == m) ? 1 : 0);
+         }
+      }
+      this.capacitance = (this.rank == 0) ? null : LUFactorization.factor(c, this.rank);
+   }
+
+   public double[] solve(double[] rhs) {
+      double[] x = this.base.solve(rhs);
+      if (this.rank == 0) {
+         return x;
+      }
+
+      double[] w = new double[this.rank];
+      for (int l = 0; l < this.rank; l++) {
+         double[] vl = this.v[l];
+         double rollingSum = 0;
+         for (int i = 0; i < this.size; i++) {
+            rollingSum += vl[i] * x[i];
+         }
+         w[l] = rollingSum;
+      }
+      w = this.capacitance.solve(w);
+
+      for (int i = 0; i < this.size; i++) {
+         double[] zi = this.z[i];
+         double rollingSum = 0;
+         for (int l = 0; l < this.rank; l++) {
+            rollingSum += zi[l] * w[l];
+         }
+         x[i] = x[i] - rollingSum;
+      }
+      return x;
+   }
+
+   // n x k block of right hand sides, batched through the old factor
+   public double[][] solve(double[][] rhsBlock) {
+      double[][] x = this.base.solve(rhsBlock);
+      if (this.rank == 0) {
+         return x;
+      }
+
+      int numRhs = rhsBlock[0].length;
+      double[] w = new double[this.rank];
+      for (int c = 0; c < numRhs; c++) {
+         for (int l = 0; l < this.rank; l++) {
+            double[] vl = this.v[l];
+            double rollingSum = 0;
+            for (int i = 0; i < this.size; i++) {
+               rollingSum += vl[i] * x[i][c];
+            }
+            w[l] = rollingSum;
+         }
+         double[] wc = this.capacitance.solve(w);
+
+         for (int i = 0; i < this.size; i++) {
+            double[] zi = this.z[i];
+            double rollingSum = 0;
+            for (int l = 0; l < this.rank; l++) {
+               rollingSum += zi[l] * wc[l];
+            }
+            x[i][c] = x[i][c] - rollingSum;
+         }
+      }
+      return x;
+   }
+
+   /* Getters */
+   public LUFactorization getBase() {
+      return base;
+   }
+
+   public int getSize() {
+      return size;
+   }
+
+   public int getRank() {
+      return rank;
+   }
+
+}
@@ -0,0 +1,108 @@
+package solvers;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import geometryContainers.AirfoilGeometry;
+import geometryContainers.GeometryKey;
+
+/* * * * * * * * * * * * * * *
+ *  Zero lift angle of attack for an airfoil
+ *
+ * The panel system is linear in the freestream so
+ * total circulation is
+ *    Gamma(alpha) = cos(alpha) Gamma_0 + sin(alpha) Gamma_90
+ * which is zero at alpha = atan(-Gamma_0 / Gamma_90).
+ * Gamma_0 and Gamma_90 are the two base solutions of
+ * the superposition mode, the only matrix solves needed.
+ *
+ * pressure integrated Cl is then driven below eps with
+ * a secant method starting from that angle, every step
+ * is an O(n) superposed evaluation, no further solves.
+ *
+ * results are memoized per geometry so every caller
+ * sharing this object shares them
+ * * * * * * * * * * * * * * */
+public class ZeroLiftAlphaSolver {
+
+   private final ConcurrentHashMap<GeometryKey, double[]> zeroLiftAlphas;  // {alpha, eps it was solved to}
+   private final int MAX_ITERATIONS = 50;
+
+   public ZeroLiftAlphaSolver() {
+      this.zeroLiftAlphas = new ConcurrentHashMap<GeometryKey, double[]>();
+   }
+
+   public double getZeroLiftAlpha(AirfoilGeometry af, double eps) {
+      GeometryKey key = af.getGeometryKey();
+
+      double[] known = this.zeroLiftAlphas.get(key);
+      if (known != null && known[1] <= eps) {
+         return known[0];
+      }
+
+      double zeroLiftAlpha = this.calculateZeroLiftAlpha(af, eps);
+      this.zeroLiftAlphas.put(key, new double[] {zeroLiftAlpha, eps});
+      return zeroLiftAlpha;
+   }
+
+   private double calculateZeroLiftAlpha(AirfoilGeometry af, double eps) {
+
+      VortexPanelSolver zvpm = new VortexPanelSolver();
+      zvpm.setAirfoil(af);
+      zvpm.setVinfinity(1);
+      zvpm.setSuperpositionMode(true);
+
+      zvpm.runVPMSolver(0);
+      double circulation0 = this.totalCirculation(zvpm);
+      zvpm.runVPMSolver(Math.PI / 2);
+      double circulation90 = this.totalCirculation(zvpm);
+
+      if (circulation90 == 0) {
+         throw new ArithmeticException("ZeroLiftAlphaSolver: circulation does not vary with alpha");
+      }
+
+      // secant on pressure Cl, Cl(alpha) is nearly linear so this is a couple of steps
+      double guess1 = Math.atan(-circulation0 / circulation90);
+      zvpm.runVPMSolver(guess1);
+      double val1 = zvpm.getCl();
+
+      double guess2 = guess1 + (Math.PI / 180);
+      zvpm.runVPMSolver(guess2);
+      double val2 = zvpm.getCl();
+
+      int counter = 0;
+      while ( Math.abs(val1) >= eps ) {
+         if (val1 == val2 || counter > this.MAX_ITERATIONS) {
+            throw new ArithmeticException("ZeroLiftAlphaSolver: Cl did not converge to zero");
+         }
+         double nextGuess = guess1 - val1 * ( (guess1 - guess2) / (val1 - val2) );
+         guess2 = guess1;
+         val2 = val1;
+         guess1 = nextGuess;
+
+         zvpm.runVPMSolver(guess1);
+         val1 = zvpm.getCl();
+         counter++;
+      }
+
+      return guess1;
+   }
+
+   private double totalCirculation(VortexPanelSolver zvpm) {
+      double[] gamma = zvpm.getVortexStrengths();
+      double[] s = zvpm.getS();
+      double rollingSum = 0;
+      for (int i = 0; i < gamma.length; i++) {
+         rollingSum += gamma[i] * s[i];
+      }
+      return rollingSum;
+   }
+
+   public void clear() {
+      this.zeroLiftAlphas.clear();
+   }
+
+   public int getNumCached() {
+      return this.zeroLiftAlphas.size();
+   }
+
+}
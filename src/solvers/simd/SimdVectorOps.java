@@ -0,0 +1,114 @@
+package solvers.simd;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import solvers.VectorOps;
+
+/* * * * * * * * * * * * * * *
+ *  VectorOps on the incubating Vector API
+ *
+ * full lanes of the preferred species, then a
+ * scalar tail. subtractScaled and dot use a separate
+ * multiply and add, never a fused multiply add, so the
+ * row update gives the same bits as the scalar kernel
+ * and each product in a reduction is rounded as it
+ * is there. the reductions keep one partial sum per
+ * lane and add the lanes at the end
+ *
+ * needs jdk 17+ and --add-modules jdk.incubator.vector
+ * at compile and run time, loaded through VectorKernels
+ * * * * * * * * * * * * * * */
+public class SimdVectorOps implements VectorOps {
+
+   private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+   @Override
+   public void subtractScaled(double[] y, int yOff, double[] x, int xOff, double scale, int len) {
+      int i = 0;
+      int upper = SPECIES.loopBound(len);
+      for (; i < upper; i += SPECIES.length()) {
+         DoubleVector yv = DoubleVector.fromArray(SPECIES, y, yOff + i);
+         DoubleVector xv = DoubleVector.fromArray(SPECIES, x, xOff + i);
+         yv.sub(xv.mul(scale)).intoArray(y, yOff + i);
+      }
+      for (; i < len; i++) {
+         y[yOff + i] = y[yOff + i] - (x[xOff + i] * scale);
+      }
+   }
+
+   @Override
+   public double dot(double[] x, int xOff, double[] y, int yOff, int len) {
+      int i = 0;
+      int upper = SPECIES.loopBound(len);
+      DoubleVector acc = DoubleVector.zero(SPECIES);
+      for (; i < upper; i += SPECIES.length()) {
+         DoubleVector xv = DoubleVector.fromArray(SPECIES, x, xOff + i);
+         DoubleVector yv = DoubleVector.fromArray(SPECIES, y, yOff + i);
+         acc = acc.add(xv.mul(yv));
+      }
+      double rollingSum = acc.reduceLanes(VectorOperators.ADD);
+      for (; i < len; i++) {
+         rollingSum += x[xOff + i] * y[yOff + i];
+      }
+      return rollingSum;
+   }
+
+   @Override
+   public double sum(double[] x, int off, int len) {
+      int i = 0;
+      int upper = SPECIES.loopBound(len);
+      DoubleVector acc = DoubleVector.zero(SPECIES);
+      for (; i < upper; i += SPECIES.length()) {
+         acc = acc.add(DoubleVector.fromArray(SPECIES, x, off + i));
+      }
+      double res = acc.reduceLanes(VectorOperators.ADD);
+      for (; i < len; i++) {
+         res += x[off + i];
+      }
+      return res;
+   }
+
+   @Override
+   public void multiply(double[] x, double[] y, double[] res, int len) {
+      int i = 0;
+      int upper = SPECIES.loopBound(len);
+      for (; i < upper; i += SPECIES.length()) {
+         DoubleVector.fromArray(SPECIES, x, i).mul(DoubleVector.fromArray(SPECIES, y, i)).intoArray(res, i);
+      }
+      for (; i < len; i++) {
+         res[i] = x[i] * y[i];
+      }
+   }
+
+   @Override
+   public void multiplyByConst(double[] x, double theVal, double[] res, int len) {
+      int i = 0;
+      int upper = SPECIES.loopBound(len);
+      for (; i < upper; i += SPECIES.length()) {
+         DoubleVector.fromArray(SPECIES, x, i).mul(theVal).intoArray(res, i);
+      }
+      for (; i < len; i++) {
+         res[i] = x[i] * theVal;
+      }
+   }
+
+   @Override
+   public void addConst(double[] x, double theVal, double[] res, int len) {
+      int i = 0;
+      int upper = SPECIES.loopBound(len);
+      for (; i < upper; i += SPECIES.length()) {
+         DoubleVector.fromArray(SPECIES, x, i).add(theVal).intoArray(res, i);
+      }
+      for (; i < len; i++) {
+         res[i] = x[i] + theVal;
+      }
+   }
+
+   @Override
+   public String getName() {
+      return "simd " + SPECIES.length() + " x double";
+   }
+
+}
@@ -1,9 +1,12 @@
 package tests;
 
+import java.util.concurrent.ForkJoinPool;
+
 import org.knowm.xchart.QuickChart;
 import org.knowm.xchart.SwingWrapper;
 import org.knowm.xchart.XYChart;
 
+import dataContainers.SectionPolar;
 import geometryContainers.AirfoilGeometry;
 import geometryContainers.PropellerGeometry;
 import solvers.GoldsteinVortexTheorySolver;
@@ -137,6 +140,83 @@ public class GVTTests {
       System.out.println("C_Power: " + gvt.getPowerCoefficient());
       
    }
-   
+
+   public static void testParallelStations() {
+      AirfoilGeometry af = new AirfoilGeometry(1, 200);
+      af.becomeNACA4Series(2, 4, 1, 2);
+
+      PropellerGeometry pg = new PropellerGeometry(100);
+      pg.setGeometricWashoutDefinition(PropellerGeometry.GEOMETRICWASHOUT.PITCH_TO_DIAMETER);
+      pg.setRadialPtsToSameAirfoil(af);
+      pg.setOmega(700);
+      pg.setNumberOfBlades(2);
+      pg.setChordLinePitch(.0762);
+      pg.setRadialParameters(0.11938, 0.1);
+      pg.generateRadialPositions();
+      pg.setChordParams(0.00994, .011928 , (1.0/3.0) , .00994);
+      pg.generateChordLengths();
+
+      GoldsteinVortexTheorySolver serial = new GoldsteinVortexTheorySolver(pg, 0.5);
+      serial.setStationExecutor(null);
+      GoldsteinVortexTheorySolver parallel = new GoldsteinVortexTheorySolver(pg, 0.5);
+      ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+      parallel.setStationExecutor(pool);
+
+      try {
+         long t0 = System.nanoTime();
+         serial.runGVT();
+         long t1 = System.nanoTime();
+         parallel.runGVT();
+         long t2 = System.nanoTime();
+
+         System.out.println("=== Serial vs Parallel stations ===");
+         System.out.println("Serial   C_Thrust: " + serial.getThrustCoefficient() + " | ms: " + ((t1 - t0) / 1e6));
+         System.out.println("Parallel C_Thrust: " + parallel.getThrustCoefficient() + " | ms: " + ((t2 - t1) / 1e6));
+      } catch (Exception e) {
+         System.out.println("Exceeded max iterations");
+         e.printStackTrace();
+      } finally {
+         pool.shutdown();
+      }
+
+   }
+
+   public static void testSectionPolarGVT() {
+      AirfoilGeometry af = new AirfoilGeometry();
+      af.becomeNACA4Series(2, 4, 1, 2);
+
+      PropellerGeometry pg = new PropellerGeometry();
+      pg.setGeometricWashoutDefinition(PropellerGeometry.GEOMETRICWASHOUT.PITCH_TO_DIAMETER);
+      pg.setRadialPtsToSameAirfoil(af);
+      pg.setOmega(700);
+      pg.setNumberOfBlades(2);
+      pg.setChordLinePitch(.0762);
+      pg.setRadialParameters(0.11938, 0.1);
+      pg.generateRadialPositions();
+      pg.setChordParams(0.00994, .011928 , (1.0/3.0) , .00994);
+      pg.generateChordLengths();
+
+      GoldsteinVortexTheorySolver exact = new GoldsteinVortexTheorySolver(pg, 0.5);
+      GoldsteinVortexTheorySolver linear = new GoldsteinVortexTheorySolver(pg, 0.5);
+      linear.setSectionPolarMode(true);
+      linear.setPolarInterpolation(SectionPolar.INTERPOLATION.LINEAR);
+      GoldsteinVortexTheorySolver cubic = new GoldsteinVortexTheorySolver(pg, 0.5);
+      cubic.setSectionPolarMode(true);
+
+      try {
+         exact.runGVT();
+         linear.runGVT();
+         cubic.runGVT();
+      } catch (Exception e) {
+         System.out.println("Exceeded max iterations");
+         e.printStackTrace();
+      }
+
+      System.out.println("=== Section polar vs exact VPM ===");
+      System.out.println("Exact  C_Thrust: " + exact.getThrustCoefficient());
+      System.out.println("Linear C_Thrust: " + linear.getThrustCoefficient());
+      System.out.println("Cubic  C_Thrust: " + cubic.getThrustCoefficient());
+
+   }
    
 }
@@ -1,6 +1,13 @@
 package tests;
 
+import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.knowm.xchart.QuickChart;
 import org.knowm.xchart.SwingWrapper;
@@ -10,8 +17,23 @@ import org.knowm.xchart.style.markers.SeriesMarkers;
 
 import com.opencsv.CSVReader;
 
+import dataContainers.AirfoilPolar;
+import dataContainers.InfluenceMatrixCache;
+import dataContainers.InfluenceMatrixStore;
+
 import geometryContainers.AirfoilGeometry;
+import solvers.AdaptivePanelSolver;
+import solvers.BlockedLUKernel;
+import solvers.DenseMatrix;
+import solvers.HMatrixOperator;
+import solvers.LUFactorization;
 import solvers.MatrixSolver;
+import solvers.MixedPrecisionLU;
+import solvers.ParallelLUKernel;
+import solvers.RichardsonExtrapolation;
+import solvers.TreeCodeOperator;
+import solvers.VectorKernels;
+import solvers.VectorOps;
 import solvers.VortexPanelSolver;
 
 public class VPMTests {
@@ -26,6 +48,8 @@ public class VPMTests {
 
       //testAGaussElim();
 
+      //testLUDecomposition();
+
       //testVPMSolverAirfoilFlip();
 
       //testVPMSolverReferencePoints();
@@ -168,6 +192,30 @@ public class VPMTests {
 
 
 
+   }
+
+   public static void testLUDecomposition() {
+      double[][] testA = { {2, 1, -1}, {-3, -1, 2}, {-2, 1, 2} };
+      double[] testB = {8, -11, -3};
+      MatrixSolver ms = new MatrixSolver();
+
+      ms.setNumRows(3);
+      ms.setNumCols(3);
+      ms.setA(testA);
+      ms.setB(testB);
+
+      // factor once, solve many
+      LUFactorization lu = ms.doLUDecomposition();
+      ms.doLUSolve();
+
+      double[] postX = ms.getX();
+      double[] secondX = lu.solve(new double[] {1, 0, 0});
+
+      System.out.println("-- SOLN (expect 2, 3, -1) --");
+      for (int i = 0; i < ms.getNumRows(); i++) {
+         System.out.println( i + " : " + postX[i] + " | e0 soln: " + secondX[i]);
+      }
+
    }
 
    public static void testVPMSolverAirfoilFlip() {
@@ -352,7 +400,710 @@ public class VPMTests {
 
    }
 
+   public static void testVPMPolar() {
+
+      AirfoilGeometry ag = new AirfoilGeometry(1, 100);
+      ag.becomeNACA4Series(2,4,1,2);
+
+      VortexPanelSolver vpm = new VortexPanelSolver(ag);
+      vpm.setVinfinity(1);
+
+      double deg2rad = Math.PI / 180;
+      AirfoilPolar polar = vpm.runPolar(-5 * deg2rad, 10 * deg2rad, 1 * deg2rad);
+
+      double[] alphaDeg = new double[polar.getNumAlphas()];
+      for (int i = 0; i < polar.getNumAlphas(); i++) {
+         alphaDeg[i] = polar.getAlphaRadIndex(i) / deg2rad;
+      }
+
+      System.out.println("=== Polar ===");
+      for (int i = 0; i < polar.getNumAlphas(); i++) {
+         System.out.println("Alpha: " + alphaDeg[i] + " | Cl: " + polar.getClIndex(i) + " | Cd: " + polar.getCdIndex(i) + " | Cm: " + polar.getCmIndex(i));
+      }
+
+      XYChart chart = QuickChart.getChart("Cl v Alpha", "Alpha (deg)", "Cl", "Cl", alphaDeg, polar.getCl());
+      new SwingWrapper(chart).displayChart();
+
+   }
+
+   public static void testVPMSuperposition() {
+
+      AirfoilGeometry ag = new AirfoilGeometry(1, 100);
+      ag.becomeNACA4Series(2,4,1,2);
+
+      VortexPanelSolver direct = new VortexPanelSolver(ag);
+      direct.setVinfinity(1);
+
+      VortexPanelSolver superposed = new VortexPanelSolver(ag);
+      superposed.setVinfinity(1);
+      superposed.setSuperpositionMode(true);
+
+      System.out.println("=== Superposition vs direct solve ===");
+      for (int alphaDeg = -6; alphaDeg <= 12; alphaDeg += 3) {
+         double alphaRad = alphaDeg * (Math.PI/180);
+         direct.runVPMSolver(alphaRad);
+         superposed.runVPMSolver(alphaRad);
+
+         System.out.println("Alpha: " + alphaDeg + " | dCl: " + (direct.getCl() - superposed.getCl()) 
+               + " | dCd: " + (direct.getCd() - superposed.getCd()) + " | dCm: " + (direct.getCm() - superposed.getCm()));
+      }
+
+   }
+
+   public static void testBlockedLU() {
+
+      int n = 1000;
+      Random rand = new Random(1);
+      DenseMatrix testA = new DenseMatrix(n, n);
+      double[] testB = new double[n];
+      for (int i = 0; i < n; i++) {
+         testB[i] = rand.nextDouble();
+         for (int j = 0; j < n; j++) {
+            testA.set(i, j, rand.nextDouble() + ((i == j) ? n : 0));
+         }
+      }
+
+      // unblocked reference, minBlockedSize above n forces the fallback.
+      // every kernel is warmed up first and the best of several runs kept
+      int warmups = 2;
+      int runs = 3;
+      BlockedLUKernel unblocked = new BlockedLUKernel(64, 256, n + 1);
+      double[] refX = null;
+      long unblockedBest = Long.MAX_VALUE;
+      for (int r = 0; r < warmups + runs; r++) {
+         long t0 = System.nanoTime();
+         refX = unblocked.factor(testA).solve(testB);
+         long t1 = System.nanoTime();
+         if (r >= warmups) {
+            unblockedBest = Math.min(unblockedBest, t1 - t0);
+         }
+      }
+      System.out.println("=== Blocked LU, n = " + n + ", best of " + runs + " after " + warmups + " warm up ===");
+      System.out.println("Unblocked ms: " + (unblockedBest / 1e6));
+
+      int[] blockSizes = {16, 32, 64, 128};
+      for (int b = 0; b < blockSizes.length; b++) {
+         BlockedLUKernel blocked = new BlockedLUKernel(blockSizes[b], 256, 0);
+         double[] x = null;
+         long blockedBest = Long.MAX_VALUE;
+         for (int r = 0; r < warmups + runs; r++) {
+            long t0 = System.nanoTime();
+            x = blocked.factor(testA).solve(testB);
+            long t1 = System.nanoTime();
+            if (r >= warmups) {
+               blockedBest = Math.min(blockedBest, t1 - t0);
+            }
+         }
+         System.out.println("Block " + blockSizes[b] + " ms: " + (blockedBest / 1e6)
+               + " | speed up: " + ((double) unblockedBest / blockedBest)
+               + " | same soln: " + Arrays.equals(refX, x));
+      }
+   }
    
-   
-   
+   //Speed up of the fork join LU from 1 to N threads
+   public static void testParallelLU() {
+
+      int n = 2000;
+      int maxThreads = Runtime.getRuntime().availableProcessors();
+      Random rand = new Random(1);
+      DenseMatrix testA = new DenseMatrix(n, n);
+      double[] testB = new double[n];
+      for (int i = 0; i < n; i++) {
+         testB[i] = rand.nextDouble();
+         for (int j = 0; j < n; j++) {
+            testA.set(i, j, rand.nextDouble() + ((i == j) ? n : 0));
+         }
+      }
+
+      long t0 = System.nanoTime();
+      double[] refX = new BlockedLUKernel().factor(testA).solve(testB);
+      long serialTime = System.nanoTime() - t0;
+      System.out.println("=== Parallel LU, n = " + n + " ===");
+      System.out.println("Serial blocked ms: " + (serialTime / 1e6));
+
+      for (int threads = 1; threads <= maxThreads; threads++) {
+         ForkJoinPool pool = new ForkJoinPool(threads);
+         // threshold 0 so even the 1 thread run goes through the pool
+         ParallelLUKernel kernel = new ParallelLUKernel(pool, BlockedLUKernel.DEFAULT_BLOCK_SIZE,
+               BlockedLUKernel.DEFAULT_COLUMN_TILE, 0);
+
+         t0 = System.nanoTime();
+         double[] x = kernel.factor(testA).solve(testB);
+         long time = System.nanoTime() - t0;
+         pool.shutdown();
+
+         double speedUp = (double) serialTime / time;
+         System.out.println(threads + " threads ms: " + (time / 1e6) + " | speed up: " + speedUp
+               + " | efficiency: " + (speedUp / threads) + " | same soln: " + Arrays.equals(refX, x));
+      }
+
+   }
+
+   //Batched multi right hand side solve against one factor
+   public static void testMultiRHSSolve() {
+
+      int n = 800;
+      int k = 64;
+      Random rand = new Random(2);
+      double[][] testA = new double[n][n];
+      double[][] testB = new double[n][k];
+      for (int i = 0; i < n; i++) {
+         for (int j = 0; j < n; j++) {
+            testA[i][j] = rand.nextDouble() + ((i == j) ? n : 0);
+         }
+         for (int c = 0; c < k; c++) {
+            testB[i][c] = rand.nextDouble();
+         }
+      }
+
+      MatrixSolver ms = new MatrixSolver();
+      ms.setNumRows(n);
+      ms.setNumCols(n);
+      ms.setA(testA);
+      LUFactorization lu = ms.doLUDecomposition();
+
+      // warm both paths up so the JIT has compiled them before timing,
+      // then keep the best of several runs of each
+      int warmups = 5;
+      int runs = 10;
+      double[][] singleX = new double[k][];
+      double[][] blockX = null;
+      long singleBest = Long.MAX_VALUE;
+      long blockBest = Long.MAX_VALUE;
+      for (int r = 0; r < warmups + runs; r++) {
+         long t0 = System.nanoTime();
+         for (int c = 0; c < k; c++) {
+            double[] b = new double[n];
+            for (int i = 0; i < n; i++) {
+               b[i] = testB[i][c];
+            }
+            singleX[c] = lu.solve(b);
+         }
+         long t1 = System.nanoTime();
+         blockX = ms.solve(testB);
+         long t2 = System.nanoTime();
+         if (r >= warmups) {
+            singleBest = Math.min(singleBest, t1 - t0);
+            blockBest = Math.min(blockBest, t2 - t1);
+         }
+      }
+
+      boolean same = true;
+      for (int c = 0; c < k; c++) {
+         for (int i = 0; i < n; i++) {
+            same = same && (singleX[c][i] == blockX[i][c]);
+         }
+      }
+
+      System.out.println("=== Multi RHS solve, n = " + n + ", k = " + k + ", best of " + runs + " after " + warmups + " warm up ===");
+      System.out.println("Separate solves ms: " + (singleBest / 1e6));
+      System.out.println("Batched solve ms: " + (blockBest / 1e6) + " | speed up: " + ((double) singleBest / blockBest)
+            + " | same soln: " + same);
+
+   }
+
+   //Direct LU against preconditioned GMRES on a fine paneling
+   public static void testGMRESSolver() {
+
+      AirfoilGeometry ag = new AirfoilGeometry(1, 1500);
+      ag.becomeNACA4Series(2,4,1,2);
+
+      VortexPanelSolver vpm = new VortexPanelSolver(ag);
+      vpm.setVinfinity(1);
+      double alpha = 5 * (Math.PI/180);
+
+      long t0 = System.nanoTime();
+      vpm.runVPMSolver(alpha);
+      long t1 = System.nanoTime();
+      double directCl = vpm.getCl();
+
+      vpm.setLinearSolver(VortexPanelSolver.LINEARSOLVER.GMRES);
+      vpm.runVPMSolver(alpha);
+      long t2 = System.nanoTime();
+
+      System.out.println("=== GMRES, " + ag.getNumberOfCtrlPoints() + " panels ===");
+      System.out.println("Direct Cl: " + directCl + " | ms: " + ((t1 - t0) / 1e6));
+      System.out.println("GMRES  Cl: " + vpm.getCl() + " | ms: " + ((t2 - t1) / 1e6));
+      System.out.println("Iterations: " + vpm.getGMRESSolver().getIterations()
+            + " | relative residual: " + vpm.getGMRESSolver().getRelativeResidual());
+
+   }
+
+   //Float factor with double refinement against the plain double LU
+   public static void testMixedPrecisionLU() {
+
+      AirfoilGeometry ag = new AirfoilGeometry(1, 1000);
+      ag.becomeNACA4Series(2,4,1,2);
+
+      VortexPanelSolver vpm = new VortexPanelSolver(ag);
+      vpm.setVinfinity(1);
+      double alpha = 5 * (Math.PI/180);
+
+      long t0 = System.nanoTime();
+      vpm.runVPMSolver(alpha);
+      long t1 = System.nanoTime();
+      double directCl = vpm.getCl();
+
+      vpm.setLinearSolver(VortexPanelSolver.LINEARSOLVER.MIXED_PRECISION);
+      vpm.runVPMSolver(alpha);
+      long t2 = System.nanoTime();
+      MixedPrecisionLU mixed = vpm.getMixedPrecisionFactorization();
+
+      System.out.println("=== Mixed precision LU, " + ag.getNumberOfCtrlPoints() + " panels ===");
+      System.out.println("Double Cl: " + directCl + " | ms: " + ((t1 - t0) / 1e6));
+      System.out.println("Mixed  Cl: " + vpm.getCl() + " | ms: " + ((t2 - t1) / 1e6));
+      System.out.println("Refinement steps: " + mixed.getLastRefinementSteps() + " | fell back: " + mixed.isUsingFallback());
+
+      // Hilbert matrix, far too ill conditioned for a float factor
+      int n = 14;
+      double[][] hilbert = new double[n][n];
+      double[] b = new double[n];
+      for (int i = 0; i < n; i++) {
+         b[i] = 1;
+         for (int j = 0; j < n; j++) {
+            hilbert[i][j] = 1.0 / (i + j + 1);
+         }
+      }
+      MixedPrecisionLU hilbertLU = new MixedPrecisionLU(hilbert, n);
+      double[] x = hilbertLU.solve(b);
+      double[] xRef = LUFactorization.factor(hilbert, n).solve(b);
+      System.out.println("Hilbert " + n + " fell back: " + hilbertLU.isUsingFallback()
+            + " | same as double LU: " + Arrays.equals(x, xRef));
+
+   }
+
+   //SIMD against scalar kernels for the elimination row update and reductions,
+   // run with --add-modules jdk.incubator.vector to get the SIMD kernels
+   public static void testVectorOps() {
+
+      VectorOps scalar = VectorKernels.scalar();
+      VectorOps best = VectorKernels.get();
+      System.out.println("=== Vector ops, using " + best.getName() + " ===");
+      if (!VectorKernels.isSimdAvailable()) {
+         System.out.println("Vector API not available, scalar kernel times only");
+      }
+
+      int reps = 20000;
+      int[] panelCounts = {100, 300, 1000, 3000};
+      Random rand = new Random(3);
+      for (int p = 0; p < panelCounts.length; p++) {
+         int n = panelCounts[p];
+         double[] x = new double[n];
+         double[] y = new double[n];
+         for (int i = 0; i < n; i++) {
+            x[i] = rand.nextDouble();
+            y[i] = rand.nextDouble();
+         }
+
+         VectorOps[] kernels = {scalar, best};
+         double[] axpyNs = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+         double[] dotNs = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+         double checkSum = 0;
+         // early passes are JIT warm up, the best of the rest is kept. the order
+         // flips every pass so neither kernel always runs on the warmer JIT
+         for (int pass = 0; pass < 6; pass++) {
+            for (int k = 0; k < 2; k++) {
+               int kn = (pass % 2 == 0) ? k : 1 - k;
+               double[] yWork = y.clone();
+               long t0 = System.nanoTime();
+               for (int r = 0; r < reps; r++) {
+                  kernels[kn].subtractScaled(yWork, 0, x, 0, 1e-9, n);
+               }
+               long t1 = System.nanoTime();
+               for (int r = 0; r < reps; r++) {
+                  checkSum += kernels[kn].dot(x, 0, yWork, 0, n);
+               }
+               long t2 = System.nanoTime();
+               if (pass >= 2) {
+                  axpyNs[kn] = Math.min(axpyNs[kn], (double) (t1 - t0) / reps);
+                  dotNs[kn] = Math.min(dotNs[kn], (double) (t2 - t1) / reps);
+               }
+            }
+         }
+
+         // both kernels are the same scalar code without the Vector API, a ratio would only be noise
+         if (VectorKernels.isSimdAvailable()) {
+            System.out.println("n = " + n + " | row update ns: " + axpyNs[0] + " -> " + axpyNs[1]
+                  + " (x" + (axpyNs[0] / axpyNs[1]) + ") | dot ns: " + dotNs[0] + " -> " + dotNs[1]
+                  + " (x" + (dotNs[0] / dotNs[1]) + ") | check " + (checkSum != 0));
+         } else {
+            System.out.println("n = " + n + " | row update ns: " + axpyNs[0] + " | dot ns: " + dotNs[0]
+                  + " | check " + (checkSum != 0));
+         }
+      }
+
+   }
+
+   //Kutta Joukowski coefficients against the pressure integrated ones
+   public static void testCoefficientsOnly() {
+
+      AirfoilGeometry ag = new AirfoilGeometry(1, 1000);
+      ag.becomeNACA4Series(2,4,1,2);
+
+      VortexPanelSolver vpm = new VortexPanelSolver(ag);
+      vpm.setVinfinity(1);
+      vpm.setSuperpositionMode(true);
+      vpm.setCoefficientsOnly(true);
+
+      System.out.println("=== Coefficients only, " + ag.getNumberOfCtrlPoints() + " panels ===");
+      double deg2rad = Math.PI / 180;
+      // influence matrix and base solutions, shared by both sweeps below
+      vpm.runVPMSolver(0);
+      long t0 = System.nanoTime();
+      for (int a = -4; a <= 10; a += 2) {
+         vpm.runVPMSolver(a * deg2rad);
+         System.out.println("alpha " + a + " | Cl: " + vpm.getCl() + " | circulation Cm: " + vpm.getCirculationCm());
+      }
+      long t1 = System.nanoTime();
+      System.out.println("Circulation only ms: " + ((t1 - t0) / 1e6));
+
+      // Cd and Cm are pressure integrated either way, built on first use
+      for (int a = -4; a <= 10; a += 2) {
+         vpm.setCoefficientsOnly(true);
+         vpm.runVPMSolver(a * deg2rad);
+         double cd = vpm.getCd();
+         double cm = vpm.getCm();
+         vpm.setCoefficientsOnly(false);
+         System.out.println("alpha " + a + " | pressure Cl: " + vpm.getCl() + " | Cm: " + cm + " | Cd: " + cd);
+      }
+
+      // gamma handed back in gives the same distributions as the solve
+      double[] gamma = vpm.getVortexStrengths();
+      double[] cps = vpm.getCoeffOfPressure();
+      vpm.solveForTangentialVelocAndCp(gamma);
+      System.out.println("Cp[0] from solve: " + cps[0] + " | from solveForTangentialVelocAndCp: " + vpm.getCoeffOfPressure()[0]);
+      // neither the caller's gamma nor a returned Cp is refilled by later solves
+      double[] keptGamma = gamma.clone();
+      double[] keptCps = cps.clone();
+      vpm.runVPMSolver(2 * deg2rad);
+      vpm.getCoeffOfPressure();
+      System.out.println("gamma untouched: " + Arrays.equals(keptGamma, gamma) + " | Cp untouched: " + Arrays.equals(keptCps, cps));
+      long t2 = System.nanoTime();
+      System.out.println("With distributions ms: " + ((t2 - t1) / 1e6));
+
+   }
+
+   //Repeated shapes from separate airfoil objects hit the influence cache
+   public static void testInfluenceCache() {
+
+      // small private cache, room for three 400 panel shapes
+      InfluenceMatrixCache<LUFactorization> cache = new InfluenceMatrixCache<LUFactorization>(12L << 20);
+      int[][] nacaCodes = { {2,4,1,2}, {0,0,1,2}, {2,4,1,2}, {4,4,1,5}, {6,4,0,9}, {2,4,1,2} };
+
+      System.out.println("=== Influence matrix cache ===");
+      for (int c = 0; c < nacaCodes.length; c++) {
+         AirfoilGeometry ag = new AirfoilGeometry(1, 400);
+         ag.becomeNACA4Series(nacaCodes[c][0], nacaCodes[c][1], nacaCodes[c][2], nacaCodes[c][3]);
+
+         VortexPanelSolver vpm = new VortexPanelSolver(ag);
+         vpm.setVinfinity(1);
+         vpm.setInfluenceCache(cache);
+
+         long t0 = System.nanoTime();
+         vpm.runVPMSolver(5 * (Math.PI/180));
+         long t1 = System.nanoTime();
+         System.out.println("NACA " + nacaCodes[c][0] + nacaCodes[c][1] + nacaCodes[c][2] + nacaCodes[c][3]
+               + " | Cl: " + vpm.getCl() + " | ms: " + ((t1 - t0) / 1e6));
+      }
+      // 2412 hits twice, 6409 pushes out the least recently used 0012
+      System.out.println(cache);
+
+      // moving only a control point is a new shape, it must not hit the cached 2412
+      AirfoilGeometry moved = new AirfoilGeometry(1, 400);
+      moved.becomeNACA4Series(2,4,1,2);
+      double[] ctrl = moved.getCtrlCoords(10);
+      moved.setCtrlCoords(10, ctrl[0], ctrl[1] + 0.01);
+
+      VortexPanelSolver cached = new VortexPanelSolver(moved);
+      cached.setVinfinity(1);
+      cached.setInfluenceCache(cache);
+      cached.runVPMSolver(5 * (Math.PI/180));
+      VortexPanelSolver uncached = new VortexPanelSolver(moved);
+      uncached.setVinfinity(1);
+      uncached.setInfluenceCache(null);
+      uncached.runVPMSolver(5 * (Math.PI/180));
+      System.out.println("moved control point | Cl: " + cached.getCl() + " | uncached Cl: " + uncached.getCl());
+
+   }
+
+   public static void testInfluenceStore() throws IOException {
+
+      // a directory of its own, a store other runs share is left alone
+      File dir = Files.createTempDirectory("vpmInfluenceStore").toFile();
+      InfluenceMatrixStore store = new InfluenceMatrixStore(dir);
+
+      AirfoilGeometry ag = new AirfoilGeometry(1, 400);
+      ag.becomeNACA4Series(2, 4, 1, 2);
+
+      System.out.println("=== Influence matrix store ===");
+      // each pass starts with an empty memory cache, like a new JVM would
+      for (int pass = 0; pass < 3; pass++) {
+         InfluenceMatrixCache<LUFactorization> cache = new InfluenceMatrixCache<LUFactorization>();
+         cache.setBackingStore(store);
+
+         if (pass == 2) {
+            // flip one byte of the stored factor, the CRC catches it
+            try (RandomAccessFile raf = new RandomAccessFile(dir.listFiles()[0], "rw")) {
+               raf.seek(raf.length() - 100);
+               int b = raf.read();
+               raf.seek(raf.length() - 100);
+               raf.write(b ^ 0xff);
+            } catch (IOException e) {
+               e.printStackTrace();
+            }
+         }
+
+         VortexPanelSolver vpm = new VortexPanelSolver(ag);
+         vpm.setVinfinity(1);
+         vpm.setInfluenceCache(cache);
+
+         long t0 = System.nanoTime();
+         vpm.runVPMSolver(5 * (Math.PI/180));
+         long t1 = System.nanoTime();
+         System.out.println("pass " + pass + " | Cl: " + vpm.getCl() + " | ms: " + ((t1 - t0) / 1e6));
+      }
+      // miss and write, hit, corrupt and rewrite
+      System.out.println(store);
+
+      // a temp file left by a writer that died an hour ago is swept on open
+      File leftover = new File(dir, dir.listFiles()[0].getName() + ".1.tmp");
+      try (RandomAccessFile raf = new RandomAccessFile(leftover, "rw")) {
+         raf.setLength(1 << 20);
+      } catch (IOException e) {
+         e.printStackTrace();
+      }
+      leftover.setLastModified(System.currentTimeMillis() - 3600 * 1000L);
+      new InfluenceMatrixStore(dir);
+      System.out.println("stale temp file swept: " + !leftover.exists());
+      store.clear();
+      dir.delete();
+
+   }
+
+   public static void testLowMemory() {
+
+      AirfoilGeometry ag = new AirfoilGeometry(1, 600);
+      ag.becomeNACA4Series(2, 4, 1, 2);
+
+      System.out.println("=== Low memory mode ===");
+      for (int mode = 0; mode < 2; mode++) {
+         // private caches, so the full and low memory integrals are not shared
+         InfluenceMatrixCache<LUFactorization> cache = new InfluenceMatrixCache<LUFactorization>();
+
+         VortexPanelSolver vpm = new VortexPanelSolver(ag);
+         vpm.setVinfinity(1);
+         vpm.setInfluenceCache(cache);
+         vpm.setLowMemory(mode == 1);
+
+         long t0 = System.nanoTime();
+         vpm.runVPMSolver(5 * (Math.PI/180));
+         double cl = vpm.getCl();
+         double cd = vpm.getCd();
+         double cm = vpm.getCm();
+         long t1 = System.nanoTime();
+
+         vpm.setSuperpositionMode(true);
+         vpm.runVPMSolver(8 * (Math.PI/180));
+         System.out.println((vpm.isLowMemory() ? "low memory" : "full      ") + " | Cl: " + cl + " | Cd: " + cd
+               + " | Cm: " + cm + " | superposed Cl: " + vpm.getCl() + " | ms: " + ((t1 - t0) / 1e6)
+               + " | cached bytes: " + cache.getSizeBytes());
+      }
+      // same coefficients, bit for bit, with one n x n matrix fewer cached
+
+   }
+
+   //Hierarchical far field operator under GMRES against the direct solve
+   public static void testTreeCode() {
+
+      AirfoilGeometry ag = new AirfoilGeometry(1, 1500);
+      ag.becomeNACA4Series(2,4,1,2);
+      double alpha = 5 * (Math.PI/180);
+
+      VortexPanelSolver vpm = new VortexPanelSolver(ag);
+      vpm.setVinfinity(1);
+      vpm.runVPMSolver(alpha);
+      double directCl = vpm.getCl();
+      double directCm = vpm.getCm();
+
+      vpm.setLinearSolver(VortexPanelSolver.LINEARSOLVER.TREECODE);
+      long t0 = System.nanoTime();
+      vpm.runVPMSolver(alpha);
+      long t1 = System.nanoTime();
+
+      System.out.println("=== Tree code, " + ag.getNumberOfCtrlPoints() + " panels ===");
+      System.out.println("Direct    Cl: " + directCl + " | Cm: " + directCm);
+      System.out.println("Tree code Cl: " + vpm.getCl() + " | Cm: " + vpm.getCm() + " | ms: " + ((t1 - t0) / 1e6)
+            + " | iterations: " + vpm.getGMRESSolver().getIterations());
+
+      // well past where a dense n x n matrix is practical
+      AirfoilGeometry fine = new AirfoilGeometry(1, 6000);
+      fine.becomeNACA4Series(2,4,1,2);
+      VortexPanelSolver fineVpm = new VortexPanelSolver(fine);
+      fineVpm.setVinfinity(1);
+      fineVpm.setLinearSolver(VortexPanelSolver.LINEARSOLVER.TREECODE);
+      t0 = System.nanoTime();
+      fineVpm.runVPMSolver(alpha);
+      t1 = System.nanoTime();
+      TreeCodeOperator tree = (TreeCodeOperator) fineVpm.getInfluenceOperator();
+      System.out.println(fine.getNumberOfCtrlPoints() + " panels Cl: " + fineVpm.getCl() + " | ms: " + ((t1 - t0) / 1e6)
+            + " | iterations: " + fineVpm.getGMRESSolver().getIterations()
+            + " | series order: " + tree.getOrder() + " | tree nodes: " + tree.getNumNodes());
+
+   }
+
+   //ACA compressed influence matrix under GMRES against the direct solve
+   public static void testHMatrix() {
+
+      AirfoilGeometry ag = new AirfoilGeometry(1, 1500);
+      ag.becomeNACA4Series(2,4,1,2);
+      double alpha = 5 * (Math.PI/180);
+
+      VortexPanelSolver vpm = new VortexPanelSolver(ag);
+      vpm.setVinfinity(1);
+      vpm.runVPMSolver(alpha);
+      double directCl = vpm.getCl();
+      double directCm = vpm.getCm();
+
+      vpm.setLinearSolver(VortexPanelSolver.LINEARSOLVER.HMATRIX);
+      long t0 = System.nanoTime();
+      vpm.runVPMSolver(alpha);
+      long t1 = System.nanoTime();
+      HMatrixOperator hMatrix = (HMatrixOperator) vpm.getInfluenceOperator();
+      int n = hMatrix.getSize();
+
+      System.out.println("=== H-matrix, " + n + " panels ===");
+      System.out.println("Direct   Cl: " + directCl + " | Cm: " + directCm);
+      System.out.println("H-matrix Cl: " + vpm.getCl() + " | Cm: " + vpm.getCm() + " | ms: " + ((t1 - t0) / 1e6)
+            + " | iterations: " + vpm.getGMRESSolver().getIterations());
+      System.out.println("Stored: " + hMatrix.getStoredValues() + " of " + ((long) n * n) + " values | low rank blocks: "
+            + hMatrix.getNumLowRankBlocks() + " | dense blocks: " + hMatrix.getNumDenseBlocks()
+            + " | max rank: " + hMatrix.getMaxRank());
+
+   }
+
+   //Woodbury update of the factor after moving a few points, against a full solve
+   public static void testGeometryUpdate() {
+
+      AirfoilGeometry ag = new AirfoilGeometry(1, 1000);
+      ag.becomeNACA4Series(2,4,1,2);
+      double alpha = 5 * (Math.PI/180);
+
+      VortexPanelSolver vpm = new VortexPanelSolver(ag);
+      vpm.setVinfinity(1);
+      vpm.runVPMSolver(alpha);
+
+      System.out.println("=== Incremental geometry update ===");
+      int[][] moves = { {300}, {301, 302}, {700}, {} };
+      for (int m = 0; m < moves.length; m++) {
+         int[] changed = moves[m];
+         if (changed.length == 0) {
+            // a bump over a quarter of the surface is too big to update
+            changed = new int[250];
+            for (int k = 0; k < changed.length; k++) {
+               changed[k] = 100 + k;
+            }
+         }
+         for (int p : changed) {
+            double[] xy = ag.getPointCoords(p);
+            ag.setPointCoords(p, xy[0], xy[1] * 1.02);
+         }
+         ag.generateControlPoints();
+
+         long t0 = System.nanoTime();
+         boolean incremental = vpm.updateGeometry(changed);
+         vpm.runVPMSolver(alpha);
+         long t1 = System.nanoTime();
+
+         VortexPanelSolver fresh = new VortexPanelSolver(ag);
+         fresh.setVinfinity(1);
+         fresh.setInfluenceCache(null);
+         fresh.runVPMSolver(alpha);
+         long t2 = System.nanoTime();
+
+         System.out.println("moved " + changed.length + " | " + (incremental ? "Woodbury rank "
+               + vpm.getWoodburyFactorization().getRank() : "refactored") + " | Cl: " + vpm.getCl()
+               + " | full Cl: " + fresh.getCl() + " | ms: " + ((t1 - t0) / 1e6) + " vs " + ((t2 - t1) / 1e6));
+      }
+
+   }
+
+   //panel count grown until Cl and Cm settle, checked against a fine solve of the same airfoil
+   public static void testAdaptivePanels() throws Exception {
+
+      AirfoilGeometry ag = new AirfoilGeometry(1, 100);
+      ag.becomeNACA4Series(2,4,1,2);
+      double alpha = 5 * (Math.PI/180);
+
+      // references on the same stock spaced airfoil
+      AirfoilGeometry base = new AirfoilGeometry(1, 200);
+      base.becomeNACA4Series(2,4,1,2);
+      RichardsonExtrapolation richardson = new RichardsonExtrapolation(base);
+      richardson.run(alpha);
+      AirfoilGeometry fine = new AirfoilGeometry(1, 3200);
+      fine.becomeNACA4Series(2,4,1,2);
+      VortexPanelSolver vpm = new VortexPanelSolver(fine);
+      vpm.setVinfinity(1);
+      vpm.runVPMSolver(alpha);
+
+      System.out.println("=== Adaptive panel refinement ===");
+      System.out.println("Richardson Cl: " + richardson.getCl() + " | 3200 points Cl: " + vpm.getCl() + " | Cm: " + vpm.getCm());
+      VortexPanelSolver.LINEARSOLVER[] solvers = {VortexPanelSolver.LINEARSOLVER.DIRECT, VortexPanelSolver.LINEARSOLVER.GMRES};
+      double[] tolerances = {2e-3, 1e-3};
+      for (int t = 0; t < solvers.length; t++) {
+         AdaptivePanelSolver adaptive = new AdaptivePanelSolver(ag);
+         adaptive.setLinearSolver(solvers[t]);
+         adaptive.setTolerance(tolerances[t]);
+
+         long t0 = System.nanoTime();
+         adaptive.run(alpha);
+         long t1 = System.nanoTime();
+
+         double clDifference = Math.abs(adaptive.getCl() - vpm.getCl());
+         double cmDifference = Math.abs(adaptive.getCm() - vpm.getCm());
+         System.out.println(solvers[t] + " | tolerance: " + adaptive.getTolerance() + " | converged: " + adaptive.hasConverged()
+               + " | levels: " + adaptive.getNumLevels() + " | points: " + adaptive.getNumberOfPoints()
+               + " | Cl: " + adaptive.getCl() + " +- " + adaptive.getClErrorEstimate()
+               + " | Cm: " + adaptive.getCm() + " +- " + adaptive.getCmErrorEstimate() + " | ms: " + ((t1 - t0) / 1e6));
+         System.out.println("   against 3200 points, within tolerance: "
+               + (clDifference < adaptive.getTolerance() && cmDifference < adaptive.getTolerance()));
+      }
+
+   }
+
+   //Richardson extrapolated coefficients from 3 panel counts against a fine direct solve
+   public static void testRichardson() throws Exception {
+
+      AirfoilGeometry ag = new AirfoilGeometry(1, 200);
+      ag.becomeNACA4Series(2,4,1,2);
+      double alpha = 5 * (Math.PI/180);
+
+      RichardsonExtrapolation richardson = new RichardsonExtrapolation(ag);
+
+      long t0 = System.nanoTime();
+      richardson.run(alpha);
+      long t1 = System.nanoTime();
+      // every level is memoized, the same alpha again costs no solves
+      richardson.run(alpha);
+      long t2 = System.nanoTime();
+
+      AirfoilGeometry fine = new AirfoilGeometry(1, 3200);
+      fine.becomeNACA4Series(2,4,1,2);
+      VortexPanelSolver vpm = new VortexPanelSolver(fine);
+      vpm.setVinfinity(1);
+      vpm.runVPMSolver(alpha);
+      long t3 = System.nanoTime();
+
+      System.out.println("=== Richardson extrapolation ===");
+      System.out.println("levels: " + Arrays.toString(richardson.getLevelPoints()) + " | cached: " + richardson.getNumCached());
+      for (int k = 0; k < richardson.getNumLevels(); k++) {
+         System.out.println("   " + richardson.getLevelPoints()[k] + " points | Cl: " + richardson.getLevelCoefficients()[k][0]
+               + " | Cm: " + richardson.getLevelCoefficients()[k][2]);
+      }
+      System.out.println("extrapolated Cl: " + richardson.getCl() + " +- " + richardson.getClErrorEstimate() + " (order " + richardson.getClOrder() + ")");
+      System.out.println("extrapolated Cm: " + richardson.getCm() + " +- " + richardson.getCmErrorEstimate() + " (order " + richardson.getCmOrder() + ")");
+      System.out.println("3200 points Cl: " + vpm.getCl() + " | Cm: " + vpm.getCm());
+      System.out.println("ms: " + ((t1 - t0) / 1e6) + " | again from cache: " + ((t2 - t1) / 1e6) + " | 3200 points: " + ((t3 - t2) / 1e6));
+
+   }
+
 }